@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ExtractLatestVersionBenchmark measures CreateClientPlugin.extractLatestVersion
+ * with engine names of releases, service packs, RCs and snapshots.
+ * It is in the package of the plugin to call the protected method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractLatestVersionBenchmark {
+
+    private static final String[] SUFFIXES = { "", "-sp1", "-sp2", "-RC1",
+            "-RC2", "-01-SNAPSHOT", "-pilot1" };
+
+    @Param({ "10", "1000" })
+    public int engineCount;
+
+    private CreateClientPlugin plugin;
+
+    private List<String> engineDirNameList;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        plugin = new CreateClientPlugin();
+        engineDirNameList = new ArrayList<String>();
+        for (int i = 0; i < engineCount; i++) {
+            engineDirNameList.add("dbflute-1." + (i / 70) + "."
+                    + (i / 7 % 10) + SUFFIXES[i % SUFFIXES.length]);
+        }
+        Collections.shuffle(engineDirNameList, new Random(20141108L));
+    }
+
+    @Benchmark
+    public String extractLatestVersion() {
+        return plugin.extractLatestVersion("dbflute-", engineDirNameList);
+    }
+}
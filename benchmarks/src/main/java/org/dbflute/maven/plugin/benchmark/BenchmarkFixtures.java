@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * BenchmarkFixtures creates reproducible input files for benchmarks.
+ */
+public class BenchmarkFixtures {
+
+    /** fixed seed to create the same fixtures in every run */
+    private static final long SEED = 20141108L;
+
+    /**
+     * Create a zip file whose layout is similar to dbflute-x.y.z.zip.
+     * Half of each entry is random bytes like a compressed jar,
+     * and the other half is text like scripts and templates.
+     */
+    public static File createEngineZip(int entryCount, int entrySize)
+            throws IOException {
+        File zipFile = File.createTempFile("dbflute-bench-", ".zip");
+        zipFile.deleteOnExit();
+        Random random = new Random(SEED);
+        byte[] data = new byte[entrySize];
+        try (ZipOutputStream out = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+            for (int i = 0; i < entryCount; i++) {
+                String dirName = "lib" + (i % 10) + "/";
+                if (i < 10) {
+                    out.putNextEntry(new ZipEntry(dirName));
+                    out.closeEntry();
+                }
+                random.nextBytes(data);
+                for (int j = data.length / 2; j < data.length; j++) {
+                    data[j] = (byte) ('a' + (j % 26));
+                }
+                out.putNextEntry(new ZipEntry(dirName + "entry" + i + ".jar"));
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return zipFile;
+    }
+
+    /**
+     * Create a text file like a large dfprop, mostly ASCII with some Japanese comments.
+     */
+    public static File createDfpropFile(int fileSize) throws IOException {
+        File file = File.createTempFile("dbflute-bench-", ".dfprop");
+        file.deleteOnExit();
+        Random random = new Random(SEED);
+        StringBuilder sb = new StringBuilder(fileSize);
+        int index = 0;
+        while (sb.length() < fileSize) {
+            if (index % 8 == 0) {
+                sb.append("# \u30c6\u30fc\u30d6\u30eb\u306e\u5b9a\u7fa9\n");
+            }
+            sb.append("    ; TABLE_").append(index++).append(" = map:{ column = ")
+                    .append(Long.toHexString(random.nextLong())).append(" }\n");
+        }
+        sb.setLength(fileSize);
+        FileUtils.writeStringToFile(file, sb.toString(), "UTF-8");
+        return file;
+    }
+
+    public static File createTempDir() throws IOException {
+        File tempDir = File.createTempFile("dbflute-bench-", "");
+        if (!tempDir.delete() || !tempDir.mkdirs()) {
+            throw new IOException("Could not create "
+                    + tempDir.getAbsolutePath());
+        }
+        return tempDir;
+    }
+
+    public static void deleteQuietly(File file) {
+        FileUtils.deleteQuietly(file);
+    }
+}
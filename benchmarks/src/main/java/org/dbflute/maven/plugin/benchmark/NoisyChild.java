@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * NoisyChild is a child process that writes many lines as fast as possible,
+ * like the engine generating a large schema.
+ */
+public class NoisyChild {
+
+    public static void main(String[] args) throws IOException {
+        int lineCount = Integer.parseInt(args[0]);
+        int lineLength = Integer.parseInt(args[1]);
+        StringBuilder sb = new StringBuilder(lineLength + 16);
+        OutputStream out = new BufferedOutputStream(System.out, 64 * 1024);
+        for (int i = 0; i < lineCount; i++) {
+            sb.setLength(0);
+            sb.append("[df-generate] ").append(i).append(' ');
+            while (sb.length() < lineLength) {
+                sb.append('x');
+            }
+            sb.append('\n');
+            out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.dbflute.maven.plugin.command.ProcessOutputPump;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ProcessOutputPumpBenchmark measures draining a child process that writes
+ * many lines, as CommandExecutor does for the engine. The child is
+ * {@link NoisyChild} on this classpath, so the spawn cost is the same in both.
+ * readLine is the line-by-line loop used before, kept as a baseline.
+ * A slow log is where the pump helps, the child is not blocked by the console.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessOutputPumpBenchmark {
+
+    @Param({ "1000000" })
+    public int lineCount;
+
+    @Param({ "120" })
+    public int lineLength;
+
+    /** the time to write a line like a console, 0 is a quiet log */
+    @Param({ "0", "1000" })
+    public long logNanos;
+
+    private List<String> cmds;
+
+    private Log log;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        cmds = new ArrayList<String>();
+        cmds.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        cmds.add("-cp");
+        cmds.add(System.getProperty("java.class.path"));
+        cmds.add(NoisyChild.class.getName());
+        cmds.add(String.valueOf(lineCount));
+        cmds.add(String.valueOf(lineLength));
+        log = logNanos > 0 ? new QuietLog() {
+            @Override
+            public void info(CharSequence content) {
+                long end = System.nanoTime() + logNanos;
+                while (System.nanoTime() < end) {
+                    // busy like writing to a console
+                }
+            }
+        } : new QuietLog();
+    }
+
+    @Benchmark
+    public int pump() throws Exception {
+        Process process = start();
+        ProcessOutputPump pump = new ProcessOutputPump(
+                process.getInputStream(), log);
+        pump.start();
+        int exitValue = process.waitFor();
+        pump.join();
+        return exitValue;
+    }
+
+    @Benchmark
+    public int readLine() throws Exception {
+        Process process = start();
+        try (InputStream in = process.getInputStream();
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(in))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                log.info(line);
+            }
+        }
+        return process.waitFor();
+    }
+
+    private Process start() throws Exception {
+        return new ProcessBuilder(cmds).redirectErrorStream(true).start();
+    }
+}
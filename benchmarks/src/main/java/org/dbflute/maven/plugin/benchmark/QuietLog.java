@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.benchmark;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * QuietLog discards all messages not to measure console output in benchmarks.
+ */
+public class QuietLog implements Log {
+
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+    public void debug(CharSequence content) {
+    }
+
+    public void debug(CharSequence content, Throwable error) {
+    }
+
+    public void debug(Throwable error) {
+    }
+
+    public boolean isInfoEnabled() {
+        return false;
+    }
+
+    public void info(CharSequence content) {
+    }
+
+    public void info(CharSequence content, Throwable error) {
+    }
+
+    public void info(Throwable error) {
+    }
+
+    public boolean isWarnEnabled() {
+        return false;
+    }
+
+    public void warn(CharSequence content) {
+    }
+
+    public void warn(CharSequence content, Throwable error) {
+    }
+
+    public void warn(Throwable error) {
+    }
+
+    public boolean isErrorEnabled() {
+        return false;
+    }
+
+    public void error(CharSequence content) {
+    }
+
+    public void error(CharSequence content, Throwable error) {
+    }
+
+    public void error(Throwable error) {
+    }
+}
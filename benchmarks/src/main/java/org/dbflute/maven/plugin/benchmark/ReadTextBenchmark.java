@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ReadTextBenchmark measures ResourceUtil.readText across file sizes.
+ * All sizes are read into a heap buffer presized by the file size.
+ * bufferedReader is the reader loop used before, kept as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadTextBenchmark {
+
+    @Param({ "4096", "262144", "4194304", "67108864" })
+    public int fileSize;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        LogUtil.init(new QuietLog());
+        file = BenchmarkFixtures.createDfpropFile(fileSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFixtures.deleteQuietly(file);
+    }
+
+    @Benchmark
+    public String readText() throws Exception {
+        return ResourceUtil.readText(file, "UTF-8");
+    }
+
+    @Benchmark
+    public String bufferedReader() throws Exception {
+        StringBuilder out = new StringBuilder(1000);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"))) {
+            char[] buf = new char[8192];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.append(buf, 0, n);
+            }
+            return out.toString();
+        }
+    }
+}
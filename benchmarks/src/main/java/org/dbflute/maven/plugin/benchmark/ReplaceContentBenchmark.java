@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.dbflute.maven.plugin.util.ContentReplacer;
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ReplaceContentBenchmark measures ResourceUtil.replaceContent with parameters
+ * like ClientCreator's. replaceAll is the replacement per key used before,
+ * kept as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReplaceContentBenchmark {
+
+    @Param({ "65536", "4194304", "67108864" })
+    public int fileSize;
+
+    private File originalFile;
+
+    private File file;
+
+    private Map<String, String> params;
+
+    private ContentReplacer replacer;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        LogUtil.init(new QuietLog());
+        originalFile = BenchmarkFixtures.createDfpropFile(fileSize);
+        file = File.createTempFile("dbflute-bench-", ".dfprop");
+        file.deleteOnExit();
+        params = new LinkedHashMap<String, String>();
+        params.put("TABLE_1\\d* ", "TABLE_ONE ");
+        params.put("column = [0-9a-f]+", "column = replaced");
+        params.put("@database@", "h2");
+        params.put("@packageBase@", "com.example");
+        replacer = new ContentReplacer(params);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFixtures.deleteQuietly(originalFile);
+        BenchmarkFixtures.deleteQuietly(file);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws IOException {
+        Files.copy(originalFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Benchmark
+    public File replaceContent() throws Exception {
+        ResourceUtil.replaceContent(file, replacer, false);
+        return file;
+    }
+
+    @Benchmark
+    public File replaceAll() throws Exception {
+        String content = FileUtils.readFileToString(file, "UTF-8");
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            content = content.replaceAll(entry.getKey(), entry.getValue());
+        }
+        FileUtils.writeStringToFile(file, content, "UTF-8");
+        return file;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * UnzipBenchmark measures ResourceUtil.unzip with an engine-sized zip.
+ * perByte is the stream copy loop used before it, kept as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UnzipBenchmark {
+
+    /** about 60MB like dbflute-x.y.z.zip */
+    @Param({ "960" })
+    public int entryCount;
+
+    @Param({ "65536" })
+    public int entrySize;
+
+    @Param({ "4" })
+    public int extractThreads;
+
+    private File zipFile;
+
+    private File destDir;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        LogUtil.init(new QuietLog());
+        zipFile = BenchmarkFixtures.createEngineZip(entryCount, entrySize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        BenchmarkFixtures.deleteQuietly(zipFile);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() throws IOException {
+        destDir = BenchmarkFixtures.createTempDir();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() {
+        BenchmarkFixtures.deleteQuietly(destDir);
+    }
+
+    @Benchmark
+    public File parallel() throws Exception {
+        ResourceUtil.unzip(zipFile, destDir, extractThreads);
+        return destDir;
+    }
+
+    @Benchmark
+    public File perByte() throws Exception {
+        try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(
+                new FileInputStream(zipFile)))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = in.getNextEntry()) != null) {
+                File targetFile = new File(destDir, zipEntry.getName());
+                if (zipEntry.isDirectory()) {
+                    targetFile.mkdirs();
+                    continue;
+                }
+                targetFile.getParentFile().mkdirs();
+                try (BufferedOutputStream out = new BufferedOutputStream(
+                        new FileOutputStream(targetFile))) {
+                    copyPerByte(in, out);
+                }
+            }
+        }
+        return destDir;
+    }
+
+    private static void copyPerByte(InputStream in, BufferedOutputStream out)
+            throws IOException {
+        int data = 0;
+        while ((data = in.read()) != -1) {
+            out.write(data);
+        }
+        out.flush();
+    }
+}
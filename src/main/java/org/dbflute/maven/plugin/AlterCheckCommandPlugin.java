@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * AlterCheckCommandPlugin provides alter-check goal to run manage.[sh|bat] alter-check.
  * 
  * @goal alter-check
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -16,11 +16,23 @@
 package org.dbflute.maven.plugin;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
+import org.dbflute.maven.plugin.command.CommandExecutor;
+import org.dbflute.maven.plugin.command.InputFingerprint;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+import org.dbflute.maven.plugin.util.SystemUtil;
 
 /**
  * CommandPlugin is an abstract class for command plugins.
@@ -29,6 +41,10 @@ import org.apache.maven.project.MavenProject;
  *
  */
 public abstract class CommandPlugin extends AbstractMojo {
+    private static final Pattern DBFLUTE_HOME_PATTERN = Pattern
+            .compile("^\\s*(?:export|set)\\s+DBFLUTE_HOME=([^\r\n]+)",
+                    Pattern.MULTILINE);
+
     /**
      * Project base directory (prepended for relative file paths).
      *
@@ -56,6 +72,120 @@ public abstract class CommandPlugin extends AbstractMojo {
      */
     protected String clientProject;
 
+    /**
+     * Comma-separated client projects to run the goal for each in parallel.
+     * e.g. maindb,subdb for dbflute_maindb and dbflute_subdb
+     *
+     * @parameter property="dbflute.clientProjects"
+     */
+    protected String clientProjects;
+
+    /**
+     * The maximum number of clients running at the same time for clientProjects.
+     *
+     * @parameter property="dbflute.clientThreads" default-value="4"
+     */
+    protected int clientThreads;
+
+    /**
+     * A file or directory that represents the current schema, e.g. DDL files.
+     * It is a part of inputs for incremental generate and doc cache.
+     * They do not connect to the database to check the schema,
+     * so set it if the schema can change without changing dfprop,
+     * or they can skip a run for a changed schema.
+     *
+     * @parameter property="dbflute.schemaSnapshot"
+     */
+    protected File schemaSnapshot;
+
+    /**
+     * Skip a command executed for the same client with the same inputs
+     * earlier in the session, e.g. by other modules of the reactor.
+     * Enable it only for idempotent goals like generate and doc, because
+     * a repeated replace-schema or load-data-reverse may be intended.
+     *
+     * @parameter property="dbflute.skipDuplicate" default-value="false"
+     */
+    protected boolean skipDuplicate;
+
+    /**
+     * If true, timing, output size and peak memory of the engine are written
+     * as JSON into metricsDir per execution.
+     *
+     * @parameter property="dbflute.metrics" default-value="false"
+     */
+    protected boolean metrics;
+
+    /**
+     * @parameter property="dbflute.metricsDir" default-value="${project.build.directory}/dbflute-metrics"
+     */
+    protected File metricsDir;
+
+    /**
+     * The directory of the textfile collector of Prometheus node_exporter.
+     * If specified with metrics, the metrics are also written as a textfile.
+     *
+     * @parameter property="dbflute.metricsTextfileDir"
+     */
+    protected File metricsTextfileDir;
+
+    /**
+     * The preset of JVM options for the engine:
+     * fast-startup, large-schema or low-memory.
+     *
+     * @parameter property="dbflute.jvmProfile"
+     */
+    protected String jvmProfile;
+
+    /**
+     * JVM options for the engine separated by space, e.g. -Xmx3g.
+     * They are added after jvmProfile, so they win if duplicated.
+     * A mistyped option stops the engine.
+     *
+     * @parameter property="dbflute.jvmOptions"
+     */
+    protected String jvmOptions;
+
+    /**
+     * If true, the engine starts with the AppCDS archive in the engine directory.
+     * The first run creates the archive at its exit. It needs the engine on Java 13 or later,
+     * the java of JAVA_HOME or PATH, and it is skipped on older Java.
+     *
+     * @parameter property="dbflute.appCds" default-value="false"
+     */
+    protected boolean appCds;
+
+    /**
+     * If true, the engine runs with Java Flight Recorder, the recording is
+     * written into profilingDir, and hot methods and allocations are
+     * summarized at the end of the goal.
+     * It needs the engine on Java 11 or later, and it is skipped on older Java.
+     *
+     * @parameter property="dbflute.profiling" default-value="false"
+     */
+    protected boolean profiling;
+
+    /**
+     * @parameter property="dbflute.profilingDir" default-value="${project.build.directory}/dbflute-profiling"
+     */
+    protected File profilingDir;
+
+    /**
+     * The start time of the session to identify it.
+     *
+     * @parameter default-value="${session.startTime}"
+     * @readonly
+     */
+    protected Date sessionStartTime;
+
+    /**
+     * The session itself, only its identity is used to tell sessions started at the same time.
+     *
+     * @parameter default-value="${session}"
+     * @readonly
+     */
+    protected Object session;
+
     public File getDbfluteClientDir() {
         if (dbfluteClientDir == null) {
             if (StringUtils.isBlank(clientProject)) {
@@ -68,6 +198,200 @@ public abstract class CommandPlugin extends AbstractMojo {
         return dbfluteClientDir;
     }
 
+    /**
+     * @return the client directories for clientProjects, or the only client directory. (NotNull, NotEmpty)
+     */
+    public List<File> getDbfluteClientDirs() {
+        List<File> dbfluteClientDirs = new ArrayList<File>();
+        if (StringUtils.isNotBlank(clientProjects)) {
+            for (String name : clientProjects.split(",")) {
+                if (StringUtils.isNotBlank(name)) {
+                    dbfluteClientDirs.add(new File(basedir, "dbflute_"
+                            + name.trim()));
+                }
+            }
+        }
+        if (dbfluteClientDirs.isEmpty()) {
+            dbfluteClientDirs.add(getDbfluteClientDir());
+        }
+        return dbfluteClientDirs;
+    }
+
+    public int getClientThreads() {
+        return clientThreads;
+    }
+
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public File getMetricsDir() {
+        return metricsDir;
+    }
+
+    public File getMetricsTextfileDir() {
+        return metricsTextfileDir;
+    }
+
+    public String getJvmProfile() {
+        return jvmProfile;
+    }
+
+    public String getJvmOptions() {
+        return jvmOptions;
+    }
+
+    public boolean isAppCds() {
+        return appCds;
+    }
+
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    public File getProfilingDir() {
+        return profilingDir;
+    }
+
+    public boolean isSkipDuplicate() {
+        return skipDuplicate;
+    }
+
+    /**
+     * @return the identity of the current session. (NotNull)
+     */
+    public String getSessionId() {
+        return (sessionStartTime != null ? sessionStartTime.getTime() : 0)
+                + "-" + System.identityHashCode(session);
+    }
+
+    /**
+     * Build the key of the execution in the session.
+     * 
+     * @param dbfluteClientDir the client directory. (NotNull)
+     * @return the key of the client, the arguments and the inputs. (NotNull)
+     * @throws MojoExecutionException When it fails to read inputs.
+     */
+    public String buildExecutionKey(File dbfluteClientDir)
+            throws MojoExecutionException {
+        String path;
+        try {
+            path = dbfluteClientDir.getCanonicalPath();
+        } catch (IOException e) {
+            path = dbfluteClientDir.getAbsolutePath();
+        }
+        return path + "|" + buildInputFingerprint(dbfluteClientDir).toHex();
+    }
+
+    /**
+     * Get DBFLUTE_HOME defined in _project.[sh|bat] of the client.
+     * 
+     * @return the engine directory. (NullAllowed: not found)
+     * @throws MojoExecutionException When it fails to read the file.
+     */
+    public File getDbfluteHome() throws MojoExecutionException {
+        return getDbfluteHome(getDbfluteClientDir());
+    }
+
+    /**
+     * @param dbfluteClientDir the client directory. (NotNull)
+     * @return the engine directory. (NullAllowed: not found)
+     * @throws MojoExecutionException When it fails to read the file.
+     */
+    public File getDbfluteHome(File dbfluteClientDir)
+            throws MojoExecutionException {
+        File projectFile = new File(dbfluteClientDir,
+                SystemUtil.isWindows() ? "_project.bat" : "_project.sh");
+        if (!projectFile.isFile()) {
+            return null;
+        }
+        Matcher matcher = DBFLUTE_HOME_PATTERN.matcher(ResourceUtil.readText(
+                projectFile, "UTF-8"));
+        if (!matcher.find()) {
+            return null;
+        }
+        String path = matcher.group(1).trim().replace('\\', '/');
+        File dbfluteHome = new File(path);
+        if (!dbfluteHome.isAbsolute()) {
+            dbfluteHome = new File(dbfluteClientDir, path);
+        }
+        return dbfluteHome;
+    }
+
+    /**
+     * @return the directory for files that the plugin creates for the client. e.g. target/dbflute/dbflute_foo
+     */
+    public File getWorkDir() {
+        return new File(project.getBuild().getDirectory(), "dbflute/"
+                + getDbfluteClientDir().getName());
+    }
+
+    /**
+     * @return the executor to run the command of the goal. (NotNull)
+     */
+    protected CommandExecutor createCommandExecutor() {
+        return new CommandExecutor(this);
+    }
+
+    /**
+     * Build the fingerprint of inputs that every command depends on.
+     * 
+     * @return the fingerprint to add other inputs. (NotNull)
+     * @throws MojoExecutionException When it fails to read inputs.
+     */
+    protected InputFingerprint buildInputFingerprint()
+            throws MojoExecutionException {
+        return buildInputFingerprint(getDbfluteClientDir());
+    }
+
+    protected InputFingerprint buildInputFingerprint(File dbfluteClientDir)
+            throws MojoExecutionException {
+        File dbfluteHome = getDbfluteHome(dbfluteClientDir);
+        List<String> cmds = new ArrayList<String>();
+        updateArgs(cmds);
+        InputFingerprint fingerprint = new InputFingerprint()
+                .addValue("args", StringUtils.join(cmds, " "))
+                .addValue("engine",
+                        dbfluteHome != null ? dbfluteHome.getName() : null)
+                .addFile("build.properties",
+                        new File(dbfluteClientDir, "build.properties"))
+                .addFile("dfprop", new File(dbfluteClientDir, "dfprop"));
+        if (schemaSnapshot != null) {
+            fingerprint.addFile("schemaSnapshot", schemaSnapshot);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @param name the name of the fingerprint file. (NotNull)
+     * @return the fingerprint of the last successful run. (NullAllowed: not found)
+     */
+    protected String readFingerprint(String name) {
+        File file = new File(getWorkDir(), name);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return ResourceUtil.readText(file, "UTF-8").trim();
+        } catch (MojoExecutionException e) {
+            getLog().debug(e);
+            return null;
+        }
+    }
+
+    protected void writeFingerprint(String name, String fingerprint)
+            throws MojoExecutionException {
+        File file = new File(getWorkDir(), name);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(),
+                    fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Output error in "
+                    + file.getAbsolutePath(), e);
+        }
+    }
+
     /**
      * @param cmds
      */
@@ -19,6 +19,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
 import java.util.TreeSet;
 
@@ -29,12 +30,14 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.project.MavenProject;
 import org.dbflute.maven.plugin.client.ClientCreator;
+import org.dbflute.maven.plugin.download.PendingDownloads;
 import org.dbflute.maven.plugin.util.LogUtil;
 
 /**
  * CreateClientPlugin provides create-client goal to create dbflute client.
  * 
  * @goal create-client
+ * @threadSafe
  * 
  * @author shinsuke
  * @author jflute
@@ -136,6 +139,22 @@ public class CreateClientPlugin extends AbstractMojo {
      */
     protected String databasePassword;
 
+    /**
+     * The start time of the session to identify it.
+     *
+     * @parameter default-value="${session.startTime}"
+     * @readonly
+     */
+    protected Date sessionStartTime;
+
+    /**
+     * The session itself, only its identity is used to tell sessions started at the same time.
+     *
+     * @parameter default-value="${session}"
+     * @readonly
+     */
+    protected Object session;
+
     /** name of DBFlute containing its version same as DBFlute directory name under 'mydbflute'. (NullAllowed: until execution) */
     private String dbfluteName;
 
@@ -145,6 +164,8 @@ public class CreateClientPlugin extends AbstractMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         LogUtil.init(getLog());
 
+        // the engine may be downloaded in background by download goal
+        PendingDownloads.await(getSessionId(), mydbfluteDir);
         initDBFluteVersionIfPossible();
         if (StringUtils.isBlank(dbfluteVersion)) {
             throw new MojoFailureException("Missing dbfluteVersion property.");
@@ -417,6 +438,14 @@ public class CreateClientPlugin extends AbstractMojo {
         return basedir;
     }
 
+    /**
+     * @return the identity of the current session. (NotNull)
+     */
+    public String getSessionId() {
+        return (sessionStartTime != null ? sessionStartTime.getTime() : 0)
+                + "-" + System.identityHashCode(session);
+    }
+
     private enum DatabaseType {
         MYSQL, POSTGRESQL, H2, UNKNOWN;
     }
@@ -15,28 +15,117 @@
  */
 package org.dbflute.maven.plugin;
 
+import java.io.File;
 import java.util.List;
+import java.util.Properties;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.dbflute.maven.plugin.command.CommandExecutor;
+import org.dbflute.maven.plugin.command.InputFingerprint;
+import org.dbflute.maven.plugin.command.OutputCache;
+import org.dbflute.maven.plugin.util.DirectoryLock;
 import org.dbflute.maven.plugin.util.LogUtil;
 
 /**
  * DocCommandPlugin provides doc goal to run manage.[sh|bat] doc.
  * 
  * @goal doc
+ * @threadSafe
  * 
  * @author shinsuke
  *
  */
 public class DocCommandPlugin extends CommandPlugin {
 
+    /**
+     * If true, output/doc is restored from the cache directory when dfprop,
+     * build.properties, schema/, the engine and the schema snapshot are the same as a cached run.
+     * See {@link CommandPlugin#schemaSnapshot} for a changed schema.
+     * It is ignored with clientProjects, whose docs are always created.
+     *
+     * @parameter property="dbflute.docCache" default-value="false"
+     */
+    protected boolean docCache;
+
+    /**
+     * @parameter property="dbflute.cacheDir" default-value="${user.home}/.m2/dbflute"
+     */
+    protected File cacheDir;
+
+    /**
+     * The max number of outputs kept in the doc cache, shared by all clients.
+     * The outputs used least recently are deleted beyond it.
+     *
+     * @parameter property="dbflute.docCacheMaxEntries" default-value="20"
+     */
+    protected int docCacheMaxEntries;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         LogUtil.init(getLog());
 
-        CommandExecutor creator = new CommandExecutor(this);
+        if (docCache && StringUtils.isNotBlank(clientProjects)) {
+            LogUtil.getLog().warn(
+                    "docCache is ignored with clientProjects: "
+                            + clientProjects);
+        }
+        if (!docCache || StringUtils.isNotBlank(clientProjects)
+                || !getDbfluteClientDir().isDirectory()) {
+            CommandExecutor creator = createCommandExecutor();
+            creator.execute("manage");
+            return;
+        }
+
+        // the output is restored or created and stored without other builds of the client
+        DirectoryLock lock = DirectoryLock.lock(getDbfluteClientDir());
+        try {
+            executeWithCache();
+        } finally {
+            lock.close();
+        }
+    }
+
+    protected void executeWithCache() throws MojoExecutionException,
+            MojoFailureException {
+        File docDir = new File(getDbfluteClientDir(), "output/doc");
+        String key = getDbfluteClientDir().getName() + "-"
+                + buildInputFingerprint().toHex();
+        OutputCache outputCache = new OutputCache(new File(cacheDir, "doc"),
+                docCacheMaxEntries);
+        if (outputCache.restore(key, docDir)) {
+            Properties stats = outputCache.countUp(true);
+            LogUtil.getLog().info(
+                    "Doc cache hit, restored " + docDir.getAbsolutePath()
+                            + " (hits=" + stats.getProperty("hits")
+                            + ", misses=" + stats.getProperty("misses") + ")");
+            return;
+        }
+
+        CommandExecutor creator = createCommandExecutor();
         creator.execute("manage");
+
+        outputCache.store(key, docDir);
+        // the doc itself writes into schema/, e.g. the history, so the next
+        // run with the same inputs finds the output by the key after the run
+        outputCache.alias(getDbfluteClientDir().getName() + "-"
+                + buildInputFingerprint().toHex(), key);
+        Properties stats = outputCache.countUp(false);
+        LogUtil.getLog().info(
+                "Doc cache miss, stored " + docDir.getAbsolutePath()
+                        + " (hits=" + stats.getProperty("hits") + ", misses="
+                        + stats.getProperty("misses") + ")");
+    }
+
+    /**
+     * The doc also depends on schema/, e.g. diffmaps of the history,
+     * which can change without changing dfprop.
+     */
+    @Override
+    protected InputFingerprint buildInputFingerprint(File dbfluteClientDir)
+            throws MojoExecutionException {
+        return super.buildInputFingerprint(dbfluteClientDir).addFile(
+                "schema", new File(dbfluteClientDir, "schema"));
     }
 
     /**
@@ -16,6 +16,7 @@
 package org.dbflute.maven.plugin;
 
 import java.io.File;
+import java.util.Date;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -27,6 +28,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * Download Plugin provides download goal to download a zip file of dbflute.
  * 
  * @goal download
+ * @threadSafe
  * 
  * @author shinsuke
  * @author jflute
@@ -53,6 +55,92 @@ public class DownloadPlugin extends AbstractMojo {
      */
     private File mydbfluteDir;
 
+    /**
+     * The number of threads to extract the engine.
+     * If 2 or more, entries of the downloaded zip file are extracted in parallel.
+     *
+     * @parameter property="dbflute.extractThreads" default-value="1"
+     */
+    private int extractThreads;
+
+    /**
+     * The number of concurrent connections to download the engine.
+     * If 2 or more and the server accepts byte ranges, the zip file is downloaded by ranges.
+     *
+     * @parameter property="dbflute.downloadConnections" default-value="1"
+     */
+    private int downloadConnections;
+
+    /**
+     * If true, engines are shared with other projects through the cache directory,
+     * and mydbflute is filled by hard links to the jar files of the cached engine,
+     * and copies of the other files, e.g. scripts and templates, to be editable.
+     *
+     * @parameter property="dbflute.engineCache" default-value="false"
+     */
+    private boolean engineCache;
+
+    /**
+     * The machine-wide directory for caches of DBFlute.
+     *
+     * @parameter property="dbflute.cacheDir" default-value="${user.home}/.m2/dbflute"
+     */
+    private File cacheDir;
+
+    /**
+     * The minutes to use public properties cached in the cache directory without network.
+     * After that, they are revalidated, and the cached copy is used if offline.
+     * 0 means revalidation every time, and a negative value disables the cache.
+     *
+     * @parameter property="dbflute.publicPropTtl" default-value="60"
+     */
+    private long publicPropTtl;
+
+    /**
+     * If true, the goal returns at once and the engine is downloaded in background.
+     * Bind the goal to an early phase such as validate, then create-client and
+     * command goals in the same build wait for it only when they need the engine.
+     *
+     * @parameter property="dbflute.asyncDownload" default-value="false"
+     */
+    private boolean asyncDownload;
+
+    /**
+     * If true, throughput of download and extraction is written as JSON into metricsDir.
+     *
+     * @parameter property="dbflute.metrics" default-value="false"
+     */
+    private boolean metrics;
+
+    /**
+     * @parameter property="dbflute.metricsDir" default-value="${project.build.directory}/dbflute-metrics"
+     */
+    private File metricsDir;
+
+    /**
+     * The directory of the textfile collector of Prometheus node_exporter.
+     * If specified with metrics, the metrics are also written as a textfile.
+     *
+     * @parameter property="dbflute.metricsTextfileDir"
+     */
+    private File metricsTextfileDir;
+
+    /**
+     * The start time of the session to identify it.
+     *
+     * @parameter default-value="${session.startTime}"
+     * @readonly
+     */
+    private Date sessionStartTime;
+
+    /**
+     * The session itself, only its identity is used to tell sessions started at the same time.
+     *
+     * @parameter default-value="${session}"
+     * @readonly
+     */
+    private Object session;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         LogUtil.init(getLog());
         new DBFluteDownloader(this).execute();
@@ -73,4 +161,48 @@ public class DownloadPlugin extends AbstractMojo {
     public String getDownloadUrl() {
         return downloadUrl;
     }
+
+    public int getExtractThreads() {
+        return extractThreads;
+    }
+
+    public int getDownloadConnections() {
+        return downloadConnections;
+    }
+
+    public boolean isEngineCache() {
+        return engineCache;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public long getPublicPropTtl() {
+        return publicPropTtl;
+    }
+
+    /**
+     * @return the identity of the current session. (NotNull)
+     */
+    public String getSessionId() {
+        return (sessionStartTime != null ? sessionStartTime.getTime() : 0)
+                + "-" + System.identityHashCode(session);
+    }
+
+    public boolean isAsyncDownload() {
+        return asyncDownload;
+    }
+
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public File getMetricsDir() {
+        return metricsDir;
+    }
+
+    public File getMetricsTextfileDir() {
+        return metricsTextfileDir;
+    }
 }
@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * FreegenCommandPlugin provides freegen goal to run manage.[sh|bat] freegen.
  * 
  * @goal freegen
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -17,6 +17,7 @@ package org.dbflute.maven.plugin;
 
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.dbflute.maven.plugin.command.CommandExecutor;
@@ -26,17 +27,48 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * GenerateCommandPlugin provides generate goal to run generate.[sh|bat].
  * 
  * @goal generate
+ * @threadSafe
  * 
  * @author shinsuke
  *
  */
 public class GenerateCommandPlugin extends CommandPlugin {
 
+    private static final String FINGERPRINT_FILE = "generate.fingerprint";
+
+    /**
+     * If true, generate is skipped when dfprop, build.properties, the engine
+     * and the schema snapshot are the same as the last successful run.
+     * See {@link CommandPlugin#schemaSnapshot} for a changed schema.
+     * It is ignored with clientProjects, which are always generated.
+     *
+     * @parameter property="dbflute.incremental" default-value="false"
+     */
+    protected boolean incremental;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         LogUtil.init(getLog());
 
-        CommandExecutor creator = new CommandExecutor(this);
+        String fingerprint = null;
+        if (incremental && StringUtils.isNotBlank(clientProjects)) {
+            LogUtil.getLog().warn(
+                    "incremental is ignored with clientProjects: "
+                            + clientProjects);
+        } else if (incremental && getDbfluteClientDir().isDirectory()) {
+            fingerprint = buildInputFingerprint().toHex();
+            if (fingerprint.equals(readFingerprint(FINGERPRINT_FILE))) {
+                LogUtil.getLog().info(
+                        "Skipped generate because inputs are not changed.");
+                return;
+            }
+        }
+
+        CommandExecutor creator = createCommandExecutor();
         creator.execute("manage");
+
+        if (fingerprint != null) {
+            writeFingerprint(FINGERPRINT_FILE, fingerprint);
+        }
     }
 
     /**
@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * IntroCommandPlugin provides intro goal to run manage.[sh|bat] intro.
  * 
  * @goal intro
+ * @threadSafe
  * 
  * @author shinsuke
  *
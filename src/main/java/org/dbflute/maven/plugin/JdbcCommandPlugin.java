@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * JdbcCommandPlugin provides jdbc goal to run manage.[sh|bat] jdbc.
  * 
  * @goal jdbc
+ * @threadSafe
  * 
  * @author shinsuke
  *
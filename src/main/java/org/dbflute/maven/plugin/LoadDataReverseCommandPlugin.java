@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * LoadDataReverseCommandPlugin provides load-data-reverse goal to run manage.[sh|bat] load-data-reverse.
  * 
  * @goal load-data-reverse
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -27,6 +27,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * ManageCommandPlugin provides manage goal to run manage.[sh|bat].
  * 
  * @goal manage
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * OutsideSqlTestCommandPlugin provides outside-sql-test goal to run manage.[sh|bat] outside-sql-test.
  * 
  * @goal outside-sql-test
+ * @threadSafe
  * 
  * @author shinsuke
  *
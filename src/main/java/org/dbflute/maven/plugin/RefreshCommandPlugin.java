@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * RefreshCommandPlugin provides refresh goal to run manage.[sh|bat] refresh.
  * 
  * @goal refresh
+ * @threadSafe
  * 
  * @author shinsuke
  *
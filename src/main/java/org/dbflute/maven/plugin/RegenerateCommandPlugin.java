@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * RegenerateCommandPlugin provides regenerate goal to run manage.[sh|bat] regenerate.
  * 
  * @goal regenerate
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -27,6 +27,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * RenewalCommandPlugin provides renewal goal to run manage.[sh|bat] renewal.
  * 
  * @goal renewal
+ * @threadSafe
  * 
  * @author shinsuke
  *
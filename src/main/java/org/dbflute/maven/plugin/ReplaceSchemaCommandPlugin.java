@@ -27,6 +27,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * ReplaceSchemaCommandPlugin provides replace-schema goal to run manage.[sh|bat] replace-schema.
  * 
  * @goal replace-schema
+ * @threadSafe
  * 
  * @author shinsuke
  *
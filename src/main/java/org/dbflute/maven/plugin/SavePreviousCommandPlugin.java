@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * SavePreviousCommandPlugin provides save-previous goal to run manage.[sh|bat] save-previous.
  * 
  * @goal save-previous
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * SchemaSyncCheckCommandPlugin provides schema-sync-check goal to run manage.[sh|bat] schema-sync-check.
  * 
  * @goal schema-sync-check
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * Sql2entityCommandPlugin provides sql2entity goal to run manage.[sh|bat] sql2entity.
  * 
  * @goal sql2entity
+ * @threadSafe
  * 
  * @author shinsuke
  *
@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * TakeAssertCommandPlugin provides take-assert goal to run manage.[sh|bat] take-assert.
  * 
  * @goal take-assert
+ * @threadSafe
  * 
  * @author shinsuke
  *
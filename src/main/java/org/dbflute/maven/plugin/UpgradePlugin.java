@@ -26,6 +26,7 @@ import org.dbflute.maven.plugin.util.LogUtil;
  * UpgradePlugin provides upgrade goal to download a zip file of dbflute and replace _project.*.
  * 
  * @goal upgrade
+ * @threadSafe
  * 
  * @author shinsuke
  * @author jflute
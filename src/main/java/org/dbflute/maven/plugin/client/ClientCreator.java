@@ -16,18 +16,31 @@
 package org.dbflute.maven.plugin.client;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.dbflute.maven.plugin.CreateClientPlugin;
+import org.dbflute.maven.plugin.util.ContentReplacer;
+import org.dbflute.maven.plugin.util.DirectoryLock;
 import org.dbflute.maven.plugin.util.LogUtil;
 import org.dbflute.maven.plugin.util.ResourceUtil;
 
@@ -38,6 +51,9 @@ import org.dbflute.maven.plugin.util.ResourceUtil;
  *
  */
 public class ClientCreator {
+    /** the directory of the client in the template zip */
+    private static final String TEMPLATE_PREFIX = "dbflute_dfclient/";
+
     protected CreateClientPlugin plugin;
 
     public ClientCreator(CreateClientPlugin context) {
@@ -55,10 +71,28 @@ public class ClientCreator {
             dbfluteClientDir = new File(plugin.getBasedir(), "dbflute_"
                     + clientProject);
         }
-        if (dbfluteClientDir.isDirectory()) {
-            LogUtil.getLog().info(
-                    dbfluteClientDir.getAbsolutePath() + " already exists.");
-            return;
+        DirectoryLock lock = DirectoryLock.lock(dbfluteClientDir);
+        try {
+            if (dbfluteClientDir.isDirectory()) {
+                LogUtil.getLog().info(
+                        dbfluteClientDir.getAbsolutePath() + " already exists.");
+                return;
+            }
+            createClient(dbfluteDir, dbfluteClientDir);
+        } finally {
+            lock.close();
+        }
+    }
+
+    protected void createClient(File dbfluteDir, File dbfluteClientDir)
+            throws MojoExecutionException, MojoFailureException {
+        // Check parameters before creating anything
+        if (StringUtils.isBlank(plugin.getClientProject())) {
+            throw new MojoFailureException("Missing clientProject.");
+        }
+        if (plugin.getPackageBase() == null) {
+            throw new MojoFailureException(
+                    "Please set <packageBase> in pom.xml or -Ddbflute.packageBase=<package>.");
         }
 
         LogUtil.getLog().info("Creating " + dbfluteClientDir.getAbsolutePath());
@@ -70,88 +104,156 @@ public class ClientCreator {
                     + " does not exist.");
         }
 
-        // create temp dir
-        File tempDir = ResourceUtil.createTempDir("dbflute-client", "");
-
-        try {
-            ResourceUtil.unzip(new FileInputStream(clientZipFile), tempDir);
-        } catch (FileNotFoundException e) {
-            throw new MojoExecutionException(clientZipFile.getAbsolutePath()
-                    + " is not found.", e);
-        }
-
+        // extracted into a hidden sibling and renamed, not to leave a broken client
+        File tempDir = new File(dbfluteClientDir.getAbsoluteFile()
+                .getParentFile(), "." + dbfluteClientDir.getName() + "-"
+                + System.nanoTime());
         try {
-            LogUtil.getLog().info(
-                    "Creating " + dbfluteClientDir.getAbsolutePath());
-            FileUtils.copyDirectory(new File(tempDir, "dbflute_dfclient"),
-                    dbfluteClientDir);
+            extractClient(clientZipFile, tempDir, buildParamsMap());
+            ResourceUtil.moveAtomically(tempDir, dbfluteClientDir);
         } catch (IOException e) {
             throw new MojoExecutionException("Could not create "
                     + dbfluteClientDir.getAbsolutePath(), e);
+        } finally {
+            FileUtils.deleteQuietly(tempDir);
         }
+    }
 
-        // Check clientProject
-        if (StringUtils.isBlank(plugin.getClientProject())) {
-            throw new MojoFailureException("Missing clientProject.");
-        }
-
-        Map<String, String> params = new HashMap<String, String>();
-        if ("false".equalsIgnoreCase(plugin.getEnablePause())) {
-            for (File batFile : dbfluteClientDir
-                    .listFiles(new FilenameFilter() {
-                        public boolean accept(File dir, String name) {
-                            return name.endsWith(".bat");
-                        }
-                    })) {
-                ResourceUtil.replaceContent(batFile, params, true);
-            }
-        }
+    /**
+     * @return the map of a path in the client and its parameters. (NotNull)
+     */
+    protected Map<String, Map<String, String>> buildParamsMap() {
+        Map<String, Map<String, String>> paramsMap = new LinkedHashMap<String, Map<String, String>>();
 
         // _project.sh
-        params.clear();
+        Map<String, String> params = getParams(paramsMap, "_project.sh");
         putParam(params, "export DBFLUTE_HOME=../mydbflute/[^\r\n]+",
                 "export DBFLUTE_HOME=../mydbflute/", plugin.getDbfluteName());
-        ResourceUtil.replaceContent(new File(dbfluteClientDir,
-                "_project.sh"), params);
 
         // _project.bat
-        params.clear();
+        params = getParams(paramsMap, "_project.bat");
         putParam(params, "set DBFLUTE_HOME=..\\\\mydbflute\\\\[^\r\n]+",
                 "set DBFLUTE_HOME=..\\\\mydbflute\\\\", plugin.getDbfluteName());
-        ResourceUtil.replaceContent(new File(dbfluteClientDir,
-                "_project.bat"), params);
 
         // build.properties
-        params.clear();
+        params = getParams(paramsMap, "build.properties");
         putParam(params, "torque.project *= *[^\r\n]+", "torque.project = ",
                 plugin.getClientProject());
-        File propertyFile = new File(dbfluteClientDir, "build.properties");
-        ResourceUtil.replaceContent(propertyFile, params);
-
-        if (plugin.getPackageBase() == null) {
-            throw new MojoFailureException(
-                    "Please set <packageBase> in pom.xml or -Ddbflute.packageBase=<package>.");
-        }
 
         // dfprop/basicInfoMap.dfprop
-        params.clear();
+        params = getParams(paramsMap, "dfprop/basicInfoMap.dfprop");
         putParam(params, "@database@", "", plugin.getDatabase());
         putParam(params, "@targetLanguage@", "", plugin.getTargetLanguage());
         putParam(params, "@targetContainer@", "", plugin.getTargetContainer());
         putParam(params, "@packageBase@", "", plugin.getPackageBase());
-        ResourceUtil.replaceContent(new File(dbfluteClientDir,
-                "dfprop/basicInfoMap.dfprop"), params);
 
         // dfprop/databaseInfoMap.dfprop
-        params.clear();
+        params = getParams(paramsMap, "dfprop/databaseInfoMap.dfprop");
         putParam(params, "@driver@", "", plugin.getDatabaseDriver());
         putParam(params, "@url@", "", plugin.getDatabaseUrl());
         putParam(params, "@schema@", "", plugin.getDatabaseSchema());
         putParam(params, "@user@", "", plugin.getDatabaseUser());
         putParam(params, "@password@", "", plugin.getDatabasePassword());
-        ResourceUtil.replaceContent(new File(dbfluteClientDir,
-                "dfprop/databaseInfoMap.dfprop"), params);
+        return paramsMap;
+    }
+
+    protected Map<String, String> getParams(
+            Map<String, Map<String, String>> paramsMap, String path) {
+        Map<String, String> params = paramsMap.get(path);
+        if (params == null) {
+            params = new LinkedHashMap<String, String>();
+            paramsMap.put(path, params);
+        }
+        return params;
+    }
 
+    /**
+     * Extract the template into the directory, replacing parameters while
+     * each file is written. Files are written in parallel.
+     * 
+     * @param clientZipFile the template zip of the client. (NotNull)
+     * @param destDir the directory to extract to. (NotNull)
+     * @param paramsMap the map of a path in the client and its parameters. (NotNull)
+     * @throws MojoExecutionException When it fails to extract some file.
+     * @throws MojoFailureException When it fails to create a directory.
+     */
+    protected void extractClient(File clientZipFile, File destDir,
+            Map<String, Map<String, String>> paramsMap)
+            throws MojoExecutionException, MojoFailureException {
+        final boolean replacedPause = "false".equalsIgnoreCase(plugin
+                .getEnablePause());
+        final Map<String, ContentReplacer> replacerMap = new HashMap<String, ContentReplacer>();
+        for (Map.Entry<String, Map<String, String>> entry : paramsMap
+                .entrySet()) {
+            replacerMap.put(entry.getKey(),
+                    new ContentReplacer(entry.getValue()));
+        }
+        final ContentReplacer emptyReplacer = new ContentReplacer(
+                new HashMap<String, String>());
+
+        int threads = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try (final ZipFile zip = new ZipFile(clientZipFile)) {
+            List<Future<Void>> futureList = new ArrayList<Future<Void>>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry zipEntry = entries.nextElement();
+                if (!zipEntry.getName().startsWith(TEMPLATE_PREFIX)) {
+                    continue;
+                }
+                final String path = zipEntry.getName().substring(
+                        TEMPLATE_PREFIX.length());
+                final File targetFile = new File(destDir, path);
+                if (zipEntry.isDirectory()) {
+                    ResourceUtil.makeDir(targetFile);
+                    continue;
+                }
+                // create parents here not to race in worker threads
+                ResourceUtil.makeDir(targetFile.getParentFile());
+                futureList.add(executorService.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        // pause is replaced in bat files on the top
+                        boolean pauseFile = replacedPause
+                                && path.indexOf('/') < 0
+                                && path.endsWith(".bat");
+                        ContentReplacer replacer = replacerMap.get(path);
+                        if (replacer == null && pauseFile) {
+                            replacer = emptyReplacer;
+                        }
+                        try (InputStream in = zip.getInputStream(zipEntry)) {
+                            if (replacer != null) {
+                                LogUtil.getLog().info(
+                                        "Replacing contents in "
+                                                + targetFile.getAbsolutePath());
+                                String content = ResourceUtil.replaceText(
+                                        IOUtils.toString(in, "UTF-8"),
+                                        targetFile.getName(), replacer,
+                                        pauseFile);
+                                FileUtils.writeStringToFile(targetFile,
+                                        content, "UTF-8");
+                            } else {
+                                Files.copy(in, targetFile.toPath());
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futureList) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Could not extract "
+                    + clientZipFile.getAbsolutePath(), e.getCause());
+        } catch (InterruptedException e) {
+            throw new MojoExecutionException("Could not extract "
+                    + clientZipFile.getAbsolutePath(), e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not extract "
+                    + clientZipFile.getAbsolutePath(), e);
+        } finally {
+            executorService.shutdownNow();
+        }
     }
 
     protected void putParam(Map<String, String> params, String key,
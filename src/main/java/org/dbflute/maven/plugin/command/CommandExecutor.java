@@ -22,18 +22,34 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.dbflute.maven.plugin.CommandPlugin;
+import org.dbflute.maven.plugin.download.PendingDownloads;
+import org.dbflute.maven.plugin.util.DirectoryLock;
 import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.MetricsReport;
+import org.dbflute.maven.plugin.util.ResourceUtil;
 import org.dbflute.maven.plugin.util.SystemUtil;
 
 /**
@@ -43,6 +59,34 @@ import org.dbflute.maven.plugin.util.SystemUtil;
  *
  */
 public class CommandExecutor {
+    /** the interval to sample memory of the engine for metrics */
+    private static final long RSS_SAMPLE_INTERVAL = 250;
+
+    /** the options picked up by any JVM, which override options of the scripts, e.g. ANT_OPTS */
+    protected static final String JAVA_OPTIONS_ENV = "_JAVA_OPTIONS";
+
+    /** the AppCDS archive in the engine directory, replaced with the engine */
+    protected static final String APP_CDS_ARCHIVE_NAME = "dbflute-engine.jsa";
+
+    /** the tasks that load most classes of the engine, so only they create the archive */
+    protected static final List<String> APP_CDS_TRAINING_TASKS = Arrays.asList(
+            "generate", "regenerate", "doc", "sql2entity");
+
+    /** the first version creating an AppCDS archive at exit, which is also needed to read it */
+    protected static final int APP_CDS_JAVA_VERSION = 13;
+
+    /** the first version with Flight Recorder in OpenJDK */
+    protected static final int JFR_JAVA_VERSION = 11;
+
+    /** the major versions of java commands, each command is run once in the Maven JVM */
+    private static final Map<String, Integer> JAVA_VERSION_CACHE = new ConcurrentHashMap<String, Integer>();
+
+    private static final Pattern JAVA_VERSION_PATTERN = Pattern
+            .compile("version \"(\\d+)(?:\\.(\\d+))?");
+
+    /** the max number of methods and classes in the summary of profiling */
+    private static final int PROFILING_SUMMARY_LIMIT = 10;
+
     protected CommandPlugin plugin;
 
     public Map<String, String> environment = new HashMap<String, String>();
@@ -53,20 +97,123 @@ public class CommandExecutor {
 
     public void execute(String cmd) throws MojoExecutionException,
             MojoFailureException {
-        File dbfluteClientDir = plugin.getDbfluteClientDir();
+        List<File> dbfluteClientDirs = plugin.getDbfluteClientDirs();
+        for (File dbfluteClientDir : dbfluteClientDirs) {
+            // the engine may be downloaded in background by download goal
+            File dbfluteHome = plugin.getDbfluteHome(dbfluteClientDir);
+            if (dbfluteHome != null) {
+                PendingDownloads.await(plugin.getSessionId(),
+                        dbfluteHome.getParentFile());
+            }
+        }
+        if (dbfluteClientDirs.size() > 1) {
+            executeInParallel(cmd, dbfluteClientDirs);
+            return;
+        }
+        execute(cmd, dbfluteClientDirs.get(0), LogUtil.getLog(), null);
+    }
+
+    /**
+     * Execute the command for each client with bounded concurrency.
+     * Output lines are prefixed by the client directory name,
+     * and all failures are reported together after every client finished.
+     */
+    protected void executeInParallel(String cmd, List<File> dbfluteClientDirs)
+            throws MojoExecutionException, MojoFailureException {
+        final Log log = LogUtil.getLog();
+        int threads = Math.max(
+                Math.min(plugin.getClientThreads(), dbfluteClientDirs.size()),
+                1);
+        log.info("Running " + cmd + " for " + dbfluteClientDirs.size()
+                + " clients by " + threads + " threads");
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        Map<File, Future<Void>> futureMap = new LinkedHashMap<File, Future<Void>>();
+        try {
+            for (final File dbfluteClientDir : dbfluteClientDirs) {
+                final String prefix = "[" + dbfluteClientDir.getName() + "] ";
+                futureMap.put(dbfluteClientDir,
+                        executorService.submit(new Callable<Void>() {
+                            public Void call() throws Exception {
+                                execute(cmd, dbfluteClientDir, log, prefix);
+                                return null;
+                            }
+                        }));
+            }
+
+            StringBuilder report = new StringBuilder();
+            for (Map.Entry<File, Future<Void>> entry : futureMap.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    report.append("\n  ").append(entry.getKey().getName())
+                            .append(": ").append(e.getCause().getMessage());
+                }
+            }
+            if (report.length() > 0) {
+                throw new MojoFailureException("Build Failed in some clients."
+                        + report);
+            }
+        } catch (InterruptedException e) {
+            throw new MojoExecutionException("Could not wait processes.", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @param cmd the command name. e.g. manage
+     * @param dbfluteClientDir the client directory to run in. (NotNull)
+     * @param log the log for output of the command. (NotNull)
+     * @param prefix the prefix of output lines. (NullAllowed: then interactive)
+     */
+    protected void execute(final String cmd, final File dbfluteClientDir,
+            final Log log, final String prefix) throws MojoExecutionException,
+            MojoFailureException {
         if (!dbfluteClientDir.isDirectory()) {
-            LogUtil.getLog().info(
-                    "Create dbflute client directory. "
-                            + "Try to run \'mvn dbflute:create-client\'.");
+            log.info("Create dbflute client directory. "
+                    + "Try to run \'mvn dbflute:create-client\'.");
             return;
         }
 
+        if (plugin.isSkipDuplicate()) {
+            String key = cmd + "|" + plugin.buildExecutionKey(dbfluteClientDir);
+            boolean executed = ExecutionRegistry.execute(plugin.getSessionId(),
+                    key, new Callable<Void>() {
+                        public Void call() throws Exception {
+                            doExecute(cmd, dbfluteClientDir, log, prefix);
+                            return null;
+                        }
+                    });
+            if (!executed) {
+                log.info((prefix != null ? prefix : "") + "Skipped "
+                        + dbfluteClientDir.getName()
+                        + " because it was already executed in this session.");
+            }
+        } else {
+            doExecute(cmd, dbfluteClientDir, log, prefix);
+        }
+    }
+
+    protected void doExecute(String cmd, File dbfluteClientDir, Log log,
+            String prefix) throws MojoExecutionException, MojoFailureException {
+        // the engine writes into the client, e.g. output and log
+        DirectoryLock lock = DirectoryLock.lock(dbfluteClientDir);
+        try {
+            runProcess(cmd, dbfluteClientDir, log, prefix);
+        } finally {
+            lock.close();
+        }
+    }
+
+    protected void runProcess(String cmd, File dbfluteClientDir, Log log,
+            String prefix) throws MojoExecutionException, MojoFailureException {
+        Map<String, String> env = new HashMap<String, String>(environment);
         List<String> cmds = new ArrayList<String>();
         if (SystemUtil.isWindows()) {
             cmds.add("cmd.exe");
             cmds.add("/c");
             cmds.add(cmd + ".bat");
-            environment.put("pause_at_end", "n");
+            env.put("pause_at_end", "n");
         } else {
             cmds.add("/bin/bash");
             cmds.add(cmd + ".sh");
@@ -75,63 +222,421 @@ public class CommandExecutor {
 
         plugin.updateArgs(cmds);
 
-        LogUtil.getLog().info(
-                "Running " + StringUtils.join(cmds.toArray(), " "));
+        String jvmOptions = buildJvmOptions();
+        if (jvmOptions != null) {
+            log.info((prefix != null ? prefix : "") + "JVM options: "
+                    + jvmOptions);
+            addJavaOptions(env, jvmOptions);
+        }
+
+        File appCdsTrainingFile = null;
+        if (plugin.isAppCds()) {
+            appCdsTrainingFile = setupAppCds(env, dbfluteClientDir,
+                    buildTaskName(cmd, cmds), log, prefix);
+        }
+
+        File jfrFile = null;
+        if (plugin.isProfiling()) {
+            jfrFile = setupProfiling(env, dbfluteClientDir.getName() + "-"
+                    + buildTaskName(cmd, cmds), log, prefix);
+        }
+
+        log.info((prefix != null ? prefix : "") + "Running "
+                + StringUtils.join(cmds.toArray(), " "));
         ProcessBuilder builder = new ProcessBuilder(cmds);
-        if (environment.size() > 0) {
-            builder.environment().putAll(environment);
+        if (env.size() > 0) {
+            builder.environment().putAll(env);
         }
+        long startTime = System.currentTimeMillis();
         Process process;
         try {
+            // the engine is forked, not run in this JVM, because it resolves
+            // dfprop, schema and output from the working directory, and
+            // the working directory cannot be changed per goal in Maven's JVM
             process = builder.directory(dbfluteClientDir)
                     .redirectErrorStream(true).start();
         } catch (IOException e) {
             throw new MojoExecutionException("Could not run the command.", e);
         }
+        long spawnedTime = System.currentTimeMillis();
 
+        int exitValue;
+        long exitedTime;
+        ProcessOutputPump pump;
+        ProcessRssSampler sampler = plugin.isMetrics() ? ProcessRssSampler
+                .start(process, RSS_SAMPLE_INTERVAL) : null;
         try (InputStream stdin = process.getInputStream();
                 OutputStream stdout = process.getOutputStream()) {
-            InputStreamThread ist = new InputStreamThread(stdin);
-            OutputStreamThread ost = new OutputStreamThread(System.in, stdout);
-            ist.start();
-            ost.start();
+            pump = new ProcessOutputPump(stdin, log, prefix);
+            pump.start();
+            if (prefix == null) {
+                OutputStreamThread ost = new OutputStreamThread(System.in,
+                        stdout, log);
+                ost.start();
+            } else {
+                // the console cannot be shared, so a prompt gets end of input
+                process.getOutputStream().close();
+            }
 
-            int exitValue = process.waitFor();
+            exitValue = process.waitFor();
+            exitedTime = System.currentTimeMillis();
 
-            ist.join();
+            pump.join();
             //ost.join();
-
-            if (exitValue != 0) {
-                throw new MojoFailureException(
-                        "Build Failed. The exit value is " + exitValue + ".");
-            }
         } catch (InterruptedException e) {
+            process.destroy();
             throw new MojoExecutionException("Could not wait a process.", e);
         } catch (IOException e) {
             throw new MojoExecutionException("I/O error.", e);
+        } finally {
+            if (sampler != null) {
+                sampler.close();
+            }
+        }
+        long drainedTime = System.currentTimeMillis();
+
+        if (sampler != null) {
+            String taskName = buildTaskName(cmd, cmds);
+            MetricsReport report = new MetricsReport("command")
+                    .label("client", dbfluteClientDir.getName())
+                    .label("task", taskName)
+                    .value("start_time_seconds", startTime / 1000)
+                    .seconds("spawn_seconds", spawnedTime - startTime)
+                    .seconds("run_seconds", exitedTime - spawnedTime)
+                    .seconds("drain_seconds", drainedTime - exitedTime)
+                    .seconds("total_seconds", drainedTime - startTime)
+                    .value("output_bytes", pump.getByteCount())
+                    .value("output_lines", pump.getLineCount())
+                    .value("peak_rss_bytes", sampler.getPeakBytes())
+                    .value("exit_code", exitValue);
+            writeMetrics(report, dbfluteClientDir.getName() + "-" + taskName,
+                    startTime, log);
+        }
+
+        if (jfrFile != null) {
+            summarizeProfiling(jfrFile, log, prefix);
+        }
+        if (appCdsTrainingFile != null) {
+            publishAppCds(appCdsTrainingFile, exitValue == 0, log, prefix);
+        }
+
+        if (exitValue != 0) {
+            throw new MojoFailureException("Build Failed. The exit value is "
+                    + exitValue + ".");
         }
     }
 
-    private static class InputStreamThread extends Thread {
+    /**
+     * @return the task of the engine. e.g. generate for manage.sh generate
+     */
+    protected String buildTaskName(String cmd, List<String> cmds) {
+        int index = cmds.indexOf(cmd + (SystemUtil.isWindows() ? ".bat" : ".sh"));
+        List<String> args = cmds.subList(index + 1, cmds.size());
+        return args.isEmpty() ? cmd : StringUtils.join(args, "-");
+    }
+
+    /**
+     * @return the JVM options of jvmProfile and jvmOptions, or null if none.
+     * @throws MojoFailureException When jvmProfile is unknown.
+     */
+    protected String buildJvmOptions() throws MojoFailureException {
+        StringBuilder sb = new StringBuilder();
+        if (StringUtils.isNotBlank(plugin.getJvmProfile())) {
+            JvmProfile profile = JvmProfile.of(plugin.getJvmProfile());
+            if (profile == null) {
+                throw new MojoFailureException("Unknown jvmProfile: "
+                        + plugin.getJvmProfile()
+                        + ". Use fast-startup, large-schema or low-memory.");
+            }
+            // engines of clientProjects share the memory
+            int engineCount = Math.min(plugin.getDbfluteClientDirs().size(),
+                    Math.max(plugin.getClientThreads(), 1));
+            sb.append(profile.getOptions(engineCount));
+        }
+        if (StringUtils.isNotBlank(plugin.getJvmOptions())) {
+            sb.append(sb.length() > 0 ? " " : "").append(
+                    plugin.getJvmOptions().trim());
+        }
+        // without IgnoreUnrecognizedVMOptions, which applies to the whole JVM
+        // and hides a mistyped option in jvmOptions
+        return sb.length() > 0 ? sb.toString() : null;
+    }
 
-        private Reader reader;
+    /**
+     * Add the options to the JVM options for the engine.
+     * They follow options in the environment, so they win if duplicated.
+     * 
+     * @param env the environment for the process. (NotNull)
+     * @param options the JVM options separated by space. (NotNull)
+     */
+    protected void addJavaOptions(Map<String, String> env, String options) {
+        String current = env.containsKey(JAVA_OPTIONS_ENV) ? env
+                .get(JAVA_OPTIONS_ENV) : System.getenv(JAVA_OPTIONS_ENV);
+        env.put(JAVA_OPTIONS_ENV, StringUtils.isBlank(current) ? options
+                : current + " " + options);
+    }
 
-        public InputStreamThread(InputStream in) {
-            reader = new InputStreamReader(in);
+    /**
+     * Start the engine with the AppCDS archive, or create it at exit if missing
+     * and the task is one of APP_CDS_TRAINING_TASKS. It is skipped if the engine
+     * runs on older Java, and a JVM of another version or classpath just runs without the archive.
+     * 
+     * @param env the environment for the process. (NotNull)
+     * @param dbfluteClientDir the client directory. (NotNull)
+     * @param taskName the task of the engine. e.g. generate (NotNull)
+     * @param log the log for the result. (NotNull)
+     * @param prefix the prefix of the log. (NullAllowed)
+     * @return the archive being created by the run, or null if not created.
+     * @throws MojoExecutionException When it fails to read the client.
+     */
+    protected File setupAppCds(Map<String, String> env, File dbfluteClientDir,
+            String taskName, Log log, String prefix)
+            throws MojoExecutionException {
+        String logPrefix = prefix != null ? prefix : "";
+        File dbfluteHome = plugin.getDbfluteHome(dbfluteClientDir);
+        if (dbfluteHome == null || !dbfluteHome.isDirectory()) {
+            log.warn(logPrefix + "AppCDS is skipped because the engine is not found.");
+            return null;
+        }
+        File archiveFile;
+        try {
+            archiveFile = new File(dbfluteHome.getCanonicalFile(),
+                    APP_CDS_ARCHIVE_NAME);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not resolve "
+                    + dbfluteHome.getAbsolutePath(), e);
+        }
+        if (StringUtils.containsAny(archiveFile.getAbsolutePath(), " \t")) {
+            // JVM options in the environment cannot be quoted
+            log.warn(logPrefix + "AppCDS is skipped because of space in "
+                    + archiveFile.getAbsolutePath());
+            return null;
         }
+        int javaVersion = getEngineJavaVersion(env);
+        if (javaVersion < APP_CDS_JAVA_VERSION) {
+            // the options stop older JVMs, and ignoring them would hide mistyped jvmOptions
+            log.warn(logPrefix + "AppCDS is skipped because the engine runs on Java "
+                    + (javaVersion > 0 ? javaVersion : "of unknown version")
+                    + ", use Java " + APP_CDS_JAVA_VERSION + " or later.");
+            return null;
+        }
+        if (archiveFile.isFile()) {
+            addJavaOptions(env, "-XX:SharedArchiveFile="
+                    + archiveFile.getAbsolutePath());
+            return null;
+        }
+        if (!APP_CDS_TRAINING_TASKS.contains(taskName)) {
+            // e.g. jdbc loads only a part of the classes that generate needs
+            log.info(logPrefix + "AppCDS archive is created by "
+                    + StringUtils.join(APP_CDS_TRAINING_TASKS, ", ") + ".");
+            return null;
+        }
+        // a unique name for clients running on the same engine
+        File trainingFile = new File(archiveFile.getParentFile(), "."
+                + APP_CDS_ARCHIVE_NAME + "-" + System.nanoTime());
+        log.info(logPrefix + "Creating AppCDS archive: "
+                + archiveFile.getAbsolutePath());
+        addJavaOptions(env, "-XX:ArchiveClassesAtExit="
+                + trainingFile.getAbsolutePath());
+        return trainingFile;
+    }
 
-        @Override
-        public void run() {
-            try {
-                int ch;
-                while ((ch = reader.read()) != -1) {
-                    System.out.print((char) ch);
+    /**
+     * Publish the archive created by the run if the run succeeded.
+     * 
+     * @param trainingFile the archive created by the run. (NotNull)
+     * @param succeeded true if the engine exited normally.
+     * @param log the log for the result. (NotNull)
+     * @param prefix the prefix of the log. (NullAllowed)
+     */
+    protected void publishAppCds(File trainingFile, boolean succeeded,
+            Log log, String prefix) {
+        String logPrefix = prefix != null ? prefix : "";
+        File archiveFile = new File(trainingFile.getParentFile(),
+                APP_CDS_ARCHIVE_NAME);
+        try {
+            if (!trainingFile.isFile()) {
+                if (succeeded) {
+                    log.info(logPrefix
+                            + "No AppCDS archive was created by the engine.");
+                } else {
+                    // e.g. a directory in the class path of the engine JVM cannot be archived
+                    log.warn(logPrefix
+                            + "If the engine could not start for AppCDS, run it without dbflute.appCds.");
                 }
-            } catch (Exception e) {
-                LogUtil.getLog().debug(e);
+            } else if (succeeded && !archiveFile.exists()) {
+                ResourceUtil.moveAtomically(trainingFile, archiveFile);
+            }
+        } catch (IOException e) {
+            // another client may publish it at the same time
+            log.warn(logPrefix + "Could not publish AppCDS archive: " + e);
+        } finally {
+            FileUtils.deleteQuietly(trainingFile);
+        }
+    }
+
+    /**
+     * The engine is run by the java of JAVA_HOME, or the one on PATH, as the client scripts do.
+     * 
+     * @param env the environment for the process. (NotNull)
+     * @return the major version of the java running the engine, or -1 if unknown.
+     */
+    protected int getEngineJavaVersion(Map<String, String> env) {
+        String javaHome = env.containsKey("JAVA_HOME") ? env.get("JAVA_HOME")
+                : System.getenv("JAVA_HOME");
+        String javaCommand = StringUtils.isNotBlank(javaHome) ? new File(
+                javaHome, "bin/java").getAbsolutePath() : "java";
+        Integer version = JAVA_VERSION_CACHE.get(javaCommand);
+        if (version == null) {
+            version = readJavaVersion(javaCommand);
+            JAVA_VERSION_CACHE.put(javaCommand, version);
+        }
+        return version;
+    }
+
+    private static int readJavaVersion(String javaCommand) {
+        try {
+            Process process = new ProcessBuilder(javaCommand, "-version")
+                    .redirectErrorStream(true).start();
+            process.getOutputStream().close();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = IOUtils.toString(in);
+            }
+            process.waitFor();
+            return parseJavaVersion(output);
+        } catch (IOException e) {
+            LogUtil.getLog().debug("Could not run " + javaCommand + ": " + e);
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    /**
+     * @param output the output of java -version. e.g. openjdk version "1.8.0_292" (NotNull)
+     * @return the major version. e.g. 8 (-1: unknown)
+     */
+    protected static int parseJavaVersion(String output) {
+        Matcher matcher = JAVA_VERSION_PATTERN.matcher(output);
+        if (!matcher.find()) {
+            return -1;
+        }
+        int major = Integer.parseInt(matcher.group(1));
+        if (major == 1 && matcher.group(2) != null) { // e.g. 1.8.0
+            return Integer.parseInt(matcher.group(2));
+        }
+        return major;
+    }
+
+    /**
+     * Start Java Flight Recorder in the engine, dumped into profilingDir at exit.
+     * 
+     * @param env the environment for the process. (NotNull)
+     * @param name the name of the execution. e.g. dbflute_maindb-generate (NotNull)
+     * @param log the log for the result. (NotNull)
+     * @param prefix the prefix of the log. (NullAllowed)
+     * @return the recording file, or null if it cannot be recorded.
+     */
+    protected File setupProfiling(Map<String, String> env, String name,
+            Log log, String prefix) {
+        String logPrefix = prefix != null ? prefix : "";
+        int javaVersion = getEngineJavaVersion(env);
+        if (javaVersion < JFR_JAVA_VERSION) {
+            // the option stops older JVMs, and ignoring it would hide mistyped jvmOptions
+            log.warn(logPrefix + "Profiling is skipped because the engine runs on Java "
+                    + (javaVersion > 0 ? javaVersion : "of unknown version")
+                    + ", use Java " + JFR_JAVA_VERSION + " or later.");
+            return null;
+        }
+        File profilingDir = plugin.getProfilingDir();
+        if (!profilingDir.isDirectory() && !profilingDir.mkdirs()) {
+            log.warn(logPrefix + "Could not create "
+                    + profilingDir.getAbsolutePath());
+            return null;
+        }
+        File jfrFile = new File(profilingDir, name + "-"
+                + System.currentTimeMillis() + ".jfr");
+        String path = jfrFile.getAbsolutePath();
+        if (StringUtils.containsAny(path, " ,\t")) {
+            // JVM options in the environment cannot be quoted
+            log.warn(logPrefix
+                    + "Profiling is skipped because of space or comma in "
+                    + path);
+            return null;
+        }
+        addJavaOptions(env,
+                "-XX:StartFlightRecording=settings=profile,dumponexit=true,filename="
+                        + path);
+        return jfrFile;
+    }
+
+    /**
+     * Log hot methods and allocations of the recording.
+     * Profiling never breaks the build.
+     * 
+     * @param jfrFile the recording file. (NotNull)
+     * @param log the log for the result. (NotNull)
+     * @param prefix the prefix of the log. (NullAllowed)
+     */
+    protected void summarizeProfiling(File jfrFile, Log log, String prefix) {
+        String logPrefix = prefix != null ? prefix : "";
+        if (!jfrFile.isFile()) {
+            log.warn(logPrefix + "No recording of Flight Recorder: "
+                    + jfrFile.getAbsolutePath());
+            return;
+        }
+        log.info(logPrefix + "Recording: " + jfrFile.getAbsolutePath());
+        if (!isJfrConsumerAvailable()) {
+            log.info(logPrefix
+                    + "Run Maven on Java 11 or later for the summary, or open the recording in JDK Mission Control.");
+            return;
+        }
+        try {
+            for (String line : JfrSummary.read(jfrFile).toLines(
+                    PROFILING_SUMMARY_LIMIT)) {
+                log.info(logPrefix + line);
             }
+        } catch (IOException | RuntimeException e) {
+            log.warn(logPrefix + "Could not read the recording: " + e);
+        }
+    }
+
+    /**
+     * @return true if the JVM of Maven can read recordings.
+     */
+    protected boolean isJfrConsumerAvailable() {
+        try {
+            Class.forName("jdk.jfr.consumer.RecordingFile", false,
+                    CommandExecutor.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
         }
+    }
 
+    /**
+     * @param report the metrics of the execution. (NotNull)
+     * @param name the name of the execution. e.g. dbflute_maindb-generate (NotNull)
+     * @param startTime the start time of the execution.
+     * @param log the log for the result. (NotNull)
+     */
+    protected void writeMetrics(MetricsReport report, String name,
+            long startTime, Log log) {
+        try {
+            File jsonFile = report.writeJson(plugin.getMetricsDir(), name
+                    + "-" + startTime);
+            log.info("Metrics: " + jsonFile.getAbsolutePath());
+            if (plugin.getMetricsTextfileDir() != null) {
+                // only the latest, the collector exposes the current files
+                report.writePrometheus(plugin.getMetricsTextfileDir(),
+                        "dbflute-" + name);
+            }
+        } catch (IOException e) {
+            // metrics never break the build
+            log.warn("Could not write metrics: " + e);
+        }
     }
 
     private static class OutputStreamThread extends Thread {
@@ -140,9 +645,14 @@ public class CommandExecutor {
 
         private Writer writer;
 
-        public OutputStreamThread(InputStream in, OutputStream out) {
+        private Log log;
+
+        public OutputStreamThread(InputStream in, OutputStream out, Log log) {
             br = new BufferedReader(new InputStreamReader(in));
             writer = new OutputStreamWriter(out);
+            this.log = log;
+            // blocked on the console after the process ends
+            setDaemon(true);
         }
 
         @Override
@@ -157,12 +667,11 @@ public class CommandExecutor {
                         writer.write(cs);
                         writer.flush();
                     } catch (Exception e) {
-                        LogUtil.getLog().info(
-                                "Could not send bytes to the bat file.", e);
+                        log.info("Could not send bytes to the bat file.", e);
                     }
                 }
             } catch (Exception e) {
-                LogUtil.getLog().debug(e);
+                log.debug(e);
             }
         }
 
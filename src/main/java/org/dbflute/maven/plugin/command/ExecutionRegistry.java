@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * ExecutionRegistry remembers commands executed in the current Maven session.
+ * 
+ * Modules in a reactor share the same plugin class loader, so a command that
+ * has the same key is executed only once, and the others wait for it under
+ * parallel builds. A failed execution is forgotten to be retried by the next.
+ */
+public class ExecutionRegistry {
+
+    private static final ConcurrentMap<String, FutureTask<Void>> EXECUTION_MAP = new ConcurrentHashMap<String, FutureTask<Void>>();
+
+    private ExecutionRegistry() {
+    }
+
+    /**
+     * @param session the identity of the Maven session. (NotNull)
+     * @param key the key of the command in the session. (NotNull)
+     * @param command the command to execute. (NotNull)
+     * @return true if the command is executed, false if already done in the session.
+     * @throws MojoExecutionException When the command throws it.
+     * @throws MojoFailureException When the command throws it.
+     */
+    public static boolean execute(String session, String key,
+            Callable<Void> command) throws MojoExecutionException,
+            MojoFailureException {
+        String sessionPrefix = session + "|";
+        String executionKey = sessionPrefix + key;
+        while (true) {
+            FutureTask<Void> task = new FutureTask<Void>(command);
+            FutureTask<Void> existing = EXECUTION_MAP.putIfAbsent(executionKey,
+                    task);
+            if (existing == null) {
+                forgetOtherSessions(sessionPrefix);
+                task.run();
+                try {
+                    task.get();
+                    return true;
+                } catch (ExecutionException e) {
+                    EXECUTION_MAP.remove(executionKey, task);
+                    throw toMojoException(e);
+                } catch (InterruptedException e) {
+                    EXECUTION_MAP.remove(executionKey, task);
+                    Thread.currentThread().interrupt();
+                    throw new MojoExecutionException("Interrupted.", e);
+                }
+            }
+            try {
+                existing.get();
+                return false;
+            } catch (ExecutionException e) {
+                // the first one failed, so try it by myself
+                EXECUTION_MAP.remove(executionKey, existing);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted.", e);
+            }
+        }
+    }
+
+    private static void forgetOtherSessions(String sessionPrefix) {
+        // a long-lived JVM (e.g. embedded Maven) runs several sessions
+        for (Iterator<String> it = EXECUTION_MAP.keySet().iterator(); it
+                .hasNext();) {
+            if (!it.next().startsWith(sessionPrefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    private static MojoExecutionException toMojoException(
+            ExecutionException e) throws MojoFailureException {
+        Throwable cause = e.getCause();
+        if (cause instanceof MojoExecutionException) {
+            return (MojoExecutionException) cause;
+        } else if (cause instanceof MojoFailureException) {
+            throw (MojoFailureException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new MojoExecutionException("Failed to execute.", cause);
+    }
+}
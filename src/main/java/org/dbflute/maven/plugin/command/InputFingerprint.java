@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * InputFingerprint is a digest of files and values that a command depends on.
+ * 
+ * Files are digested by their relative paths and contents, and directories
+ * are walked in name order, so the same inputs always make the same fingerprint.
+ */
+public class InputFingerprint {
+
+    private static final int BUF_SIZE = 8192;
+
+    private final MessageDigest digest;
+
+    private final byte[] buf = new byte[BUF_SIZE];
+
+    public InputFingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 should be supported.", e);
+        }
+    }
+
+    public InputFingerprint addValue(String name, String value) {
+        update(name);
+        update(value != null ? value : "(null)");
+        return this;
+    }
+
+    /**
+     * @param name the name of the input. (NotNull)
+     * @param file the file or directory. (NotNull, NotRequiredExistence)
+     * @return this.
+     * @throws MojoExecutionException When it fails to read the file.
+     */
+    public InputFingerprint addFile(String name, File file)
+            throws MojoExecutionException {
+        update(name);
+        addFile(file, "");
+        return this;
+    }
+
+    private void addFile(File file, String path) throws MojoExecutionException {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                throw new MojoExecutionException("Could not list "
+                        + file.getAbsolutePath());
+            }
+            Arrays.sort(children);
+            update(path + "/");
+            for (File child : children) {
+                addFile(child, path + "/" + child.getName());
+            }
+        } else if (file.isFile()) {
+            update(path);
+            try (InputStream in = new FileInputStream(file)) {
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    digest.update(buf, 0, n);
+                }
+            } catch (IOException e) {
+                throw new MojoExecutionException("Input error in "
+                        + file.getAbsolutePath(), e);
+            }
+        } else {
+            update(path + "(none)");
+        }
+    }
+
+    private void update(String str) {
+        digest.update(str.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    public String toHex() {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * JfrSummary summarizes a recording of Java Flight Recorder.
+ * 
+ * This class refers to jdk.jfr, so it must not be loaded before
+ * checking that the running JVM has it, e.g. older Java 8.
+ */
+public class JfrSummary {
+
+    private final Map<String, Long> methodSamples = new HashMap<String, Long>();
+
+    private final Map<String, Long> sampledAllocations = new HashMap<String, Long>();
+
+    private final Map<String, Long> tlabAllocations = new HashMap<String, Long>();
+
+    private long executionSamples;
+
+    private long gcCount;
+
+    private Duration gcPause = Duration.ZERO;
+
+    /**
+     * @param jfrFile the recording. (NotNull)
+     * @return the summary of the recording. (NotNull)
+     * @throws IOException When it fails to read the recording.
+     */
+    public static JfrSummary read(File jfrFile) throws IOException {
+        JfrSummary summary = new JfrSummary();
+        try (RecordingFile recording = new RecordingFile(jfrFile.toPath())) {
+            while (recording.hasMoreEvents()) {
+                summary.add(recording.readEvent());
+            }
+        }
+        return summary;
+    }
+
+    protected void add(RecordedEvent event) {
+        String type = event.getEventType().getName();
+        if ("jdk.ExecutionSample".equals(type)) {
+            executionSamples++;
+            String method = topMethod(event.getStackTrace());
+            if (method != null) {
+                increment(methodSamples, method, 1);
+            }
+        } else if ("jdk.ObjectAllocationSample".equals(type)) {
+            increment(sampledAllocations, className(event), event.getLong("weight"));
+        } else if ("jdk.ObjectAllocationInNewTLAB".equals(type)) {
+            increment(tlabAllocations, className(event), event.getLong("tlabSize"));
+        } else if ("jdk.ObjectAllocationOutsideTLAB".equals(type)) {
+            increment(tlabAllocations, className(event), event.getLong("allocationSize"));
+        } else if ("jdk.GarbageCollection".equals(type)) {
+            gcCount++;
+            gcPause = gcPause.plus(event.getDuration("sumOfPauses"));
+        }
+    }
+
+    private static String topMethod(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame()) {
+                RecordedMethod method = frame.getMethod();
+                return method.getType().getName() + "." + method.getName();
+            }
+        }
+        return null;
+    }
+
+    private static String className(RecordedEvent event) {
+        RecordedClass objectClass = event.getClass("objectClass");
+        return objectClass != null ? objectClass.getName() : "unknown";
+    }
+
+    private static void increment(Map<String, Long> map, String key, long value) {
+        Long current = map.get(key);
+        map.put(key, current != null ? current + value : value);
+    }
+
+    /**
+     * @param limit the max number of methods and classes.
+     * @return the lines of the summary. (NotNull)
+     */
+    public List<String> toLines(int limit) {
+        List<String> lines = new ArrayList<String>();
+        lines.add("Hot methods (" + executionSamples + " samples):");
+        for (Map.Entry<String, Long> entry : top(methodSamples, limit)) {
+            lines.add(String.format("  %5.1f%% %s", entry.getValue() * 100.0
+                    / executionSamples, entry.getKey()));
+        }
+        // the sampled event replaces TLAB events since Java 16
+        Map<String, Long> allocations = sampledAllocations.isEmpty() ? tlabAllocations
+                : sampledAllocations;
+        lines.add("Allocations:");
+        for (Map.Entry<String, Long> entry : top(allocations, limit)) {
+            lines.add(String.format("  %8d KB %s", entry.getValue() / 1024,
+                    entry.getKey()));
+        }
+        lines.add("GC: " + gcCount + " collections, " + gcPause.toMillis()
+                + " ms paused");
+        return lines;
+    }
+
+    private static List<Map.Entry<String, Long>> top(Map<String, Long> map,
+            int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(
+                map.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> o1,
+                    Map.Entry<String, Long> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * JvmProfile is a preset of JVM options for the engine.
+ * 
+ * The client scripts give the engine -Xmx512m by ANT_OPTS, so the heap
+ * is always specified explicitly, because percentage options like
+ * MaxRAMPercentage are ignored under -Xmx. The options are known by
+ * Java 8u92 and later, so IgnoreUnrecognizedVMOptions is not needed
+ * and a mistyped option in jvmOptions still stops the engine.
+ */
+public enum JvmProfile {
+
+    /** for small schemas and tasks like jdbc, stop at C1 and avoid GC threads */
+    FAST_STARTUP("fast-startup") {
+        @Override
+        public String getOptions(int engineCount) {
+            return "-XX:TieredStopAtLevel=1 -XX:+UseSerialGC";
+        }
+    },
+
+    /**
+     * for generating thousands of tables, a half of the memory as heap,
+     * divided by the engines running at the same time for clientProjects.
+     * The other half is for Maven itself and native memory of the engines,
+     * so the container is not killed before OutOfMemoryError.
+     * The heap is at least 512m, the default of the client scripts.
+     */
+    LARGE_SCHEMA("large-schema") {
+        @Override
+        public String getOptions(int engineCount) {
+            long totalMemory = getTotalMemory();
+            long heapMega = totalMemory > 0 ? totalMemory / 2 / MEGA : 2048;
+            String heap = "-Xmx" + Math.max(heapMega / Math.max(engineCount, 1), 512) + "m";
+            return heap
+                    + " -XX:+UseG1GC -XX:+UseStringDeduplication -XX:MaxMetaspaceSize=256m -XX:+ExitOnOutOfMemoryError";
+        }
+    },
+
+    /** for small containers, keep the default heap and trim native memory */
+    LOW_MEMORY("low-memory") {
+        @Override
+        public String getOptions(int engineCount) {
+            return "-Xmx512m -XX:+UseSerialGC -XX:TieredStopAtLevel=1 -XX:MaxMetaspaceSize=128m"
+                    + " -XX:ReservedCodeCacheSize=32m -XX:MaxDirectMemorySize=64m -Xss512k";
+        }
+    };
+
+    private static final long MEGA = 1024 * 1024;
+
+    private final String name;
+
+    private JvmProfile(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param engineCount the number of engines running at the same time. (1 or more)
+     * @return the JVM options separated by space. (NotNull)
+     */
+    public abstract String getOptions(int engineCount);
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name the name of the profile. e.g. large-schema (NotNull)
+     * @return the profile, or null if unknown.
+     */
+    public static JvmProfile of(String name) {
+        for (JvmProfile profile : values()) {
+            if (profile.name.equalsIgnoreCase(name.trim())) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the memory of the machine, or the container on recent JVMs, or -1 if unknown.
+     */
+    protected static long getTotalMemory() {
+        OperatingSystemMXBean bean = ManagementFactory
+                .getOperatingSystemMXBean();
+        // getTotalPhysicalMemorySize() is deprecated since Java 14 for getTotalMemorySize()
+        for (String methodName : new String[] { "getTotalMemorySize",
+                "getTotalPhysicalMemorySize" }) {
+            try {
+                Method method = Class.forName(
+                        "com.sun.management.OperatingSystemMXBean").getMethod(
+                        methodName);
+                return ((Number) method.invoke(bean)).longValue();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                continue; // e.g. an older JVM or not HotSpot
+            }
+        }
+        return -1;
+    }
+}
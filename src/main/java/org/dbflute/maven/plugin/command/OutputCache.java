@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.dbflute.maven.plugin.util.DirectoryLock;
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+
+/**
+ * OutputCache stores output directories of a command keyed by the fingerprint of its inputs.
+ * <pre>
+ * e.g. cacheDir = ~/.m2/dbflute/doc
+ *  dbflute_foo-[fingerprint]/      : a copy of output/doc
+ *  dbflute_foo-[fingerprint].alias : another key of the same copy, containing the key of the copy
+ *  stats.properties                : hit and miss counts
+ * </pre>
+ * Only the copies used most recently are kept, up to maxEntries,
+ * and aliases of evicted copies are deleted with them.
+ */
+public class OutputCache {
+
+    private static final String STATS_FILE = "stats.properties";
+
+    private static final String ALIAS_EXT = ".alias";
+
+    private final File cacheDir;
+
+    private final int maxEntries;
+
+    /**
+     * @param cacheDir the directory of the cache. (NotNull)
+     * @param maxEntries the max number of copies kept in the cache. (1 or more)
+     */
+    public OutputCache(File cacheDir, int maxEntries) {
+        this.cacheDir = cacheDir;
+        this.maxEntries = Math.max(maxEntries, 1);
+    }
+
+    /**
+     * Restore the cached output into the directory. The copy is made in
+     * a hidden sibling and renamed, so a failed copy keeps the directory.
+     * The caller locks the directory not to race a command writing it.
+     * 
+     * @param key the key of the output. (NotNull)
+     * @param outputDir the directory replaced by the cached output. (NotNull)
+     * @return true if the output is cached and restored.
+     * @throws MojoExecutionException When it fails to restore.
+     */
+    public boolean restore(String key, File outputDir)
+            throws MojoExecutionException {
+        File entryDir = findEntryDir(key);
+        if (entryDir == null) {
+            return false;
+        }
+        File parentDir = outputDir.getAbsoluteFile().getParentFile();
+        File tempDir = new File(parentDir, "." + outputDir.getName() + "-"
+                + System.nanoTime());
+        File oldDir = new File(parentDir, "." + outputDir.getName() + "-old-"
+                + System.nanoTime());
+        try {
+            try {
+                FileUtils.copyDirectory(entryDir, tempDir);
+            } catch (IOException e) {
+                if (!entryDir.isDirectory()) { // evicted by other build
+                    return false;
+                }
+                throw e;
+            }
+            // the most recently used one is kept by eviction
+            entryDir.setLastModified(System.currentTimeMillis());
+            if (outputDir.exists()) {
+                ResourceUtil.moveAtomically(outputDir, oldDir);
+            }
+            try {
+                ResourceUtil.moveAtomically(tempDir, outputDir);
+            } catch (IOException e) {
+                if (oldDir.exists()) {
+                    ResourceUtil.moveAtomically(oldDir, outputDir);
+                }
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not restore "
+                    + outputDir.getAbsolutePath(), e);
+        } finally {
+            FileUtils.deleteQuietly(tempDir);
+            FileUtils.deleteQuietly(oldDir);
+        }
+        return true;
+    }
+
+    private File findEntryDir(String key) throws MojoExecutionException {
+        File entryDir = new File(cacheDir, key);
+        if (entryDir.isDirectory()) {
+            return entryDir;
+        }
+        File aliasFile = new File(cacheDir, key + ALIAS_EXT);
+        if (aliasFile.isFile()) {
+            File aliasedDir = new File(cacheDir, ResourceUtil.readText(
+                    aliasFile, "UTF-8").trim());
+            if (aliasedDir.isDirectory()) {
+                return aliasedDir;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store a copy of the output. The copy is published by renaming,
+     * so a half-stored output is never restored.
+     * 
+     * @param key the key of the output. (NotNull)
+     * @param outputDir the directory to store. (NotNull)
+     * @throws MojoExecutionException When it fails to store.
+     */
+    public void store(String key, File outputDir) throws MojoExecutionException {
+        if (!outputDir.isDirectory()) {
+            return;
+        }
+        File entryDir = new File(cacheDir, key);
+        File tempDir = new File(cacheDir, "." + key + "-" + System.nanoTime());
+        try {
+            FileUtils.copyDirectory(outputDir, tempDir);
+            if (!entryDir.exists()) {
+                ResourceUtil.moveAtomically(tempDir, entryDir);
+            }
+            // the copy has the date of the output, but it is the newest entry
+            entryDir.setLastModified(System.currentTimeMillis());
+        } catch (IOException e) {
+            if (!entryDir.isDirectory()) { // not stored by other build
+                throw new MojoExecutionException("Could not store "
+                        + outputDir.getAbsolutePath(), e);
+            }
+        } finally {
+            FileUtils.deleteQuietly(tempDir);
+        }
+        evict();
+    }
+
+    /**
+     * Let the other key restore the stored output, without another copy.
+     * 
+     * @param aliasKey the other key of the output. (NotNull)
+     * @param key the key of the stored output. (NotNull)
+     * @throws MojoExecutionException When it fails to write the alias.
+     */
+    public void alias(String aliasKey, String key)
+            throws MojoExecutionException {
+        if (aliasKey.equals(key) || !new File(cacheDir, key).isDirectory()) {
+            return;
+        }
+        File aliasFile = new File(cacheDir, aliasKey + ALIAS_EXT);
+        File tempFile = new File(cacheDir, "." + aliasKey + ALIAS_EXT + "-"
+                + System.nanoTime());
+        try {
+            Files.write(tempFile.toPath(), key.getBytes(StandardCharsets.UTF_8));
+            ResourceUtil.moveAtomically(tempFile, aliasFile,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(tempFile);
+            throw new MojoExecutionException("Could not write "
+                    + aliasFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Delete the copies used least recently beyond maxEntries,
+     * and the aliases of deleted copies.
+     * 
+     * @throws MojoExecutionException When it fails to lock.
+     */
+    protected void evict() throws MojoExecutionException {
+        DirectoryLock lock = DirectoryLock.lock(cacheDir);
+        try {
+            File[] entryDirs = cacheDir.listFiles(new FileFilter() {
+                public boolean accept(File file) {
+                    return file.isDirectory() && !file.getName().startsWith(".");
+                }
+            });
+            if (entryDirs != null && entryDirs.length > maxEntries) {
+                Arrays.sort(entryDirs, new Comparator<File>() {
+                    public int compare(File o1, File o2) {
+                        return Long.compare(o2.lastModified(), o1.lastModified());
+                    }
+                });
+                for (int i = maxEntries; i < entryDirs.length; i++) {
+                    FileUtils.deleteQuietly(entryDirs[i]);
+                }
+            }
+            File[] aliasFiles = cacheDir.listFiles(new FileFilter() {
+                public boolean accept(File file) {
+                    return file.isFile() && file.getName().endsWith(ALIAS_EXT);
+                }
+            });
+            for (File aliasFile : aliasFiles != null ? aliasFiles : new File[0]) {
+                String key = aliasFile.getName().substring(0,
+                        aliasFile.getName().length() - ALIAS_EXT.length());
+                if (findEntryDir(key) == null) {
+                    FileUtils.deleteQuietly(aliasFile);
+                }
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Count a hit or a miss. The stats are shared by builds, so they are
+     * read and written under the lock of the cache directory.
+     * 
+     * @param hit true if hit.
+     * @return the counts after this. (NotNull)
+     * @throws MojoExecutionException When it fails to lock.
+     */
+    public Properties countUp(boolean hit) throws MojoExecutionException {
+        DirectoryLock lock = DirectoryLock.lock(cacheDir);
+        try {
+            return doCountUp(hit);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private Properties doCountUp(boolean hit) {
+        Properties stats = new Properties();
+        File statsFile = new File(cacheDir, STATS_FILE);
+        if (statsFile.isFile()) {
+            try (InputStream in = new FileInputStream(statsFile)) {
+                stats.load(in);
+            } catch (IOException e) {
+                LogUtil.getLog().debug(e);
+            }
+        }
+        String name = hit ? "hits" : "misses";
+        stats.setProperty(name,
+                String.valueOf(Long.parseLong(stats.getProperty(name, "0")) + 1));
+        stats.setProperty("hits", stats.getProperty("hits", "0"));
+        stats.setProperty("misses", stats.getProperty("misses", "0"));
+        File tempFile = new File(cacheDir, "." + STATS_FILE + "-"
+                + System.nanoTime());
+        try {
+            Files.createDirectories(cacheDir.toPath());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            stats.store(out, null);
+            Files.write(tempFile.toPath(), out.toByteArray());
+            ResourceUtil.moveAtomically(tempFile, statsFile,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) { // only for report
+            LogUtil.getLog().debug(e);
+            FileUtils.deleteQuietly(tempFile);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * ProcessOutputPump sends the output of a child process to Maven's Log line by line.
+ * 
+ * The output is read in bulk by a reader thread and passed to a writer thread
+ * through a bounded queue, so a slow console does not block the child process
+ * while the queue has room. Lines are passed in batches of one read
+ * not to hand off each line, so the queue holds at most 64 batches
+ * of up to 64K chars each, plus one line not yet complete.
+ * A line without a separator is passed at the end of the stream,
+ * or when no more output comes for a while, e.g. a prompt waiting for input.
+ */
+public class ProcessOutputPump {
+
+    private static final int BUF_SIZE = 64 * 1024;
+
+    /** the number of batches, a batch is lines of one read */
+    private static final int QUEUE_CAPACITY = 64;
+
+    /** compared by identity to finish the writer thread */
+    private static final List<String> END_OF_STREAM = new ArrayList<String>();
+
+    /** how long a line without a separator waits for the rest */
+    private static final long PARTIAL_LINE_TIMEOUT_MILLIS = 200;
+
+    private static final long POLL_MILLIS = 10;
+
+    private final CountingInputStream counter;
+
+    private final Reader reader;
+
+    private final Log log;
+
+    /** the prefix of each line (NotNull: empty if no prefix) */
+    private final String prefix;
+
+    private final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(
+            QUEUE_CAPACITY);
+
+    private final Thread readerThread;
+
+    private final Thread writerThread;
+
+    private volatile long lineCount; // written only by the reader thread
+
+    public ProcessOutputPump(InputStream in, Log log) {
+        this(in, log, null);
+    }
+
+    public ProcessOutputPump(InputStream in, Log log, String prefix) {
+        this.counter = new CountingInputStream(in);
+        this.reader = new InputStreamReader(counter);
+        this.log = log;
+        this.prefix = prefix != null ? prefix : "";
+        readerThread = new Thread(new Runnable() {
+            public void run() {
+                pumpLines();
+            }
+        }, "dbflute-output-reader");
+        writerThread = new Thread(new Runnable() {
+            public void run() {
+                writeLines();
+            }
+        }, "dbflute-output-writer");
+    }
+
+    public void start() {
+        readerThread.start();
+        writerThread.start();
+    }
+
+    public void join() throws InterruptedException {
+        readerThread.join();
+        writerThread.join();
+    }
+
+    private void pumpLines() {
+        StringBuilder pending = new StringBuilder();
+        try {
+            char[] buf = new char[BUF_SIZE];
+            int n;
+            while ((n = reader.read(buf)) != -1) {
+                List<String> lines = new ArrayList<String>();
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == '\n') {
+                        if (pending.length() == 0) { // usually, without a copy
+                            int end = i > start && buf[i - 1] == '\r' ? i - 1 : i;
+                            addLine(new String(buf, start, end - start), lines);
+                        } else {
+                            pending.append(buf, start, i - start);
+                            emit(pending, lines);
+                        }
+                        start = i + 1;
+                    }
+                }
+                pending.append(buf, start, n - start);
+                if (!lines.isEmpty()) { // not to hold them while waiting
+                    queue.put(lines);
+                }
+                if (pending.length() > 0 && !awaitMoreOutput()) {
+                    // e.g. a prompt waiting for input without a line separator
+                    List<String> partial = new ArrayList<String>(1);
+                    emit(pending, partial);
+                    queue.put(partial);
+                }
+            }
+            if (pending.length() > 0) {
+                List<String> lines = new ArrayList<String>(1);
+                emit(pending, lines);
+                queue.put(lines);
+            }
+        } catch (IOException e) {
+            log.debug(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            putQuietly(END_OF_STREAM);
+        }
+    }
+
+    /**
+     * @return true if more output is ready to read before the timeout.
+     */
+    private boolean awaitMoreOutput() throws IOException, InterruptedException {
+        // a half line is not ready only for a moment when the child flushes it
+        long deadline = System.currentTimeMillis() + PARTIAL_LINE_TIMEOUT_MILLIS;
+        while (!reader.ready()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        return true;
+    }
+
+    private void emit(StringBuilder pending, List<String> lines) {
+        int length = pending.length();
+        if (length > 0 && pending.charAt(length - 1) == '\r') {
+            length--;
+        }
+        addLine(pending.substring(0, length), lines);
+        pending.setLength(0);
+    }
+
+    private void addLine(String line, List<String> lines) {
+        lines.add(prefix.isEmpty() ? line : prefix + line);
+        lineCount++;
+    }
+
+    /**
+     * @return the bytes of the output read so far, complete after {@link #join()}.
+     */
+    public long getByteCount() {
+        return counter.getByteCount();
+    }
+
+    /**
+     * @return the number of the lines, complete after {@link #join()}.
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    private void putQuietly(List<String> lines) {
+        try {
+            queue.put(lines);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writerThread.interrupt();
+        }
+    }
+
+    private void writeLines() {
+        try {
+            while (true) {
+                List<String> lines = queue.take();
+                if (lines == END_OF_STREAM) {
+                    return;
+                }
+                for (String line : lines) {
+                    log.info(line);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
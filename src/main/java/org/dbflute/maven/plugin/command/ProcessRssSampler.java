@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dbflute.maven.plugin.util.LogUtil;
+
+/**
+ * ProcessRssSampler samples the resident memory of a process tree on Linux.
+ * 
+ * The engine runs as a JVM under the shell of manage.sh, so the sum of
+ * VmRSS of the process and its descendants is sampled from /proc, and
+ * the peak of the samples is kept. It does nothing on other platforms
+ * or if the process id is unknown.
+ */
+public class ProcessRssSampler implements Closeable {
+
+    private static final File PROC_DIR = new File("/proc");
+
+    private final long pid;
+
+    private final long intervalMillis;
+
+    private volatile long peakBytes = -1;
+
+    private volatile boolean closed;
+
+    private Thread thread;
+
+    protected ProcessRssSampler(long pid, long intervalMillis) {
+        this.pid = pid;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param process the process to sample. (NotNull)
+     * @param intervalMillis the interval of samples.
+     * @return the started sampler. (NotNull)
+     */
+    public static ProcessRssSampler start(Process process, long intervalMillis) {
+        long pid = PROC_DIR.isDirectory() ? findPid(process) : -1;
+        ProcessRssSampler sampler = new ProcessRssSampler(pid, intervalMillis);
+        if (pid > 0) {
+            sampler.startThread();
+        }
+        return sampler;
+    }
+
+    /**
+     * Find the process id, by Process#pid() since Java 9, or the field of UNIXProcess.
+     * 
+     * @param process the process. (NotNull)
+     * @return the process id. (-1: unknown)
+     */
+    protected static long findPid(Process process) {
+        try {
+            Method method = Process.class.getMethod("pid");
+            return ((Number) method.invoke(process)).longValue();
+        } catch (NoSuchMethodException e) {
+            // Java 8
+        } catch (Exception e) {
+            LogUtil.getLog().debug("Could not get the pid: " + e);
+            return -1;
+        }
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return ((Number) field.get(process)).longValue();
+        } catch (Exception e) {
+            LogUtil.getLog().debug("Could not get the pid: " + e);
+            return -1;
+        }
+    }
+
+    private void startThread() {
+        thread = new Thread(new Runnable() {
+            public void run() {
+                while (!closed) {
+                    sample();
+                    try {
+                        Thread.sleep(intervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "dbflute-rss-sampler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected void sample() {
+        long total = 0;
+        for (long each : findProcessTree()) {
+            total += readRssBytes(each);
+        }
+        if (total > peakBytes) {
+            peakBytes = total;
+        }
+    }
+
+    /**
+     * @return the process and its descendants. (NotNull)
+     */
+    protected List<Long> findProcessTree() {
+        Map<Long, List<Long>> childrenMap = new HashMap<Long, List<Long>>();
+        String[] names = PROC_DIR.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.isEmpty() || !Character.isDigit(name.charAt(0))) {
+                    continue;
+                }
+                long ppid = readParentPid(name);
+                if (ppid > 0) {
+                    List<Long> children = childrenMap.get(ppid);
+                    if (children == null) {
+                        children = new ArrayList<Long>();
+                        childrenMap.put(ppid, children);
+                    }
+                    children.add(Long.valueOf(name));
+                }
+            }
+        }
+        List<Long> tree = new ArrayList<Long>();
+        Deque<Long> deque = new ArrayDeque<Long>();
+        deque.add(pid);
+        while (!deque.isEmpty()) {
+            Long current = deque.poll();
+            tree.add(current);
+            List<Long> children = childrenMap.get(current);
+            if (children != null) {
+                deque.addAll(children);
+            }
+        }
+        return tree;
+    }
+
+    private static long readParentPid(String pidName) {
+        try {
+            // e.g. 1234 (java) S 1200 ..., the command may contain spaces
+            String stat = new String(Files.readAllBytes(new File(PROC_DIR,
+                    pidName + "/stat").toPath()), StandardCharsets.UTF_8);
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(
+                    " ", 3);
+            return Long.parseLong(fields[1]);
+        } catch (IOException e) { // finished
+            return -1;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static long readRssBytes(long pid) {
+        try {
+            for (String line : Files.readAllLines(new File(PROC_DIR, pid
+                    + "/status").toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) { // e.g. VmRSS:  123456 kB
+                    String value = line.substring("VmRSS:".length()).trim();
+                    return Long.parseLong(value.split("\\s+")[0]) * 1024;
+                }
+            }
+        } catch (IOException e) { // finished
+        } catch (RuntimeException e) {
+            LogUtil.getLog().debug("Could not read VmRSS of " + pid + ": " + e);
+        }
+        return 0;
+    }
+
+    /**
+     * @return the peak bytes of the samples. (-1: not sampled)
+     */
+    public long getPeakBytes() {
+        return peakBytes;
+    }
+
+    public void close() {
+        closed = true;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(intervalMillis * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
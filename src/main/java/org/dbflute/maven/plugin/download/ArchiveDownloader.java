@@ -0,0 +1,414 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+
+/**
+ * ArchiveDownloader saves a remote archive to a local file.
+ * <pre>
+ * The archive is written to [destFile].part at first, and renamed to destFile
+ * after the size and CRC of every entry are verified. If the connection is dropped,
+ * the part file is kept and the next download resumes it by an HTTP range request
+ * with If-Range, so a part of the archive changed on the server is downloaded again.
+ * The validator (ETag or Last-Modified) is kept in [destFile].part.validator.
+ * 
+ * If two or more connections are specified and the server accepts ranges,
+ * the archive is split into byte ranges that are downloaded concurrently
+ * into the preallocated part file. Otherwise it is downloaded by one stream.
+ * A preallocated part file has holes until all ranges are done, so it is marked by
+ * [destFile].part.chunked, and it is discarded instead of resumed if the marker remains.
+ * </pre>
+ */
+public class ArchiveDownloader {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    public static final String PART_EXT = ".part";
+    public static final String CHUNKED_EXT = ".chunked";
+    public static final String VALIDATOR_EXT = ".validator";
+    protected static final int BUF_SIZE = 64 * 1024;
+    protected static final long RETRY_INTERVAL_MILLIS = 1000L;
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    /** the number of attempts in one download, resuming from the part file */
+    protected int maxAttempts = 3;
+
+    /** the number of concurrent connections for one archive */
+    protected int connections = 1;
+
+    /** the minimum size of a range, smaller archive is downloaded by one stream */
+    protected long minChunkSize = 1024 * 1024;
+
+    /** the bytes received by this downloader, written by the threads of ranges */
+    protected final AtomicLong transferredBytes = new AtomicLong();
+
+    // ===================================================================================
+    //                                                                            Download
+    //                                                                            ========
+    /**
+     * @param url the URL of the archive. (NotNull)
+     * @param destFile the file to save the archive. (NotNull)
+     * @return the bytes received by this download, less than the archive if resumed.
+     * @throws MojoExecutionException When it fails to download or the archive is broken.
+     */
+    public long download(String url, File destFile) throws MojoExecutionException {
+        final long startBytes = transferredBytes.get();
+        final File partFile = new File(destFile.getParentFile(), destFile.getName() + PART_EXT);
+        try (FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            final FileLock lock = tryLock(channel);
+            if (lock == null) { // other build is downloading the same archive
+                throw new MojoExecutionException(partFile.getAbsolutePath() + " is locked by other process.");
+            }
+            try {
+                final File chunkedFile = toChunkedFile(partFile);
+                if (chunkedFile.exists()) { // killed while downloading ranges, the holes are unknown
+                    LogUtil.getLog().info("Discarding the part file downloaded by ranges: " + partFile.getAbsolutePath());
+                    channel.truncate(0);
+                    Files.delete(chunkedFile.toPath());
+                }
+                if (!downloadInChunksIfPossible(url, channel, partFile)) {
+                    downloadWithRetry(url, channel, partFile);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException(ResourceUtil.buildConnectionErrorMessage(url)
+                    + "\n\nThe downloaded part is kept in " + partFile.getAbsolutePath()
+                    + ", and it will be resumed next time.", e);
+        }
+        verify(partFile);
+        try {
+            ResourceUtil.moveAtomically(partFile, destFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(toValidatorFile(partFile).toPath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not rename " + partFile.getAbsolutePath(), e);
+        }
+        return transferredBytes.get() - startBytes;
+    }
+
+    protected File toChunkedFile(File partFile) {
+        return new File(partFile.getPath() + CHUNKED_EXT);
+    }
+
+    protected File toValidatorFile(File partFile) {
+        return new File(partFile.getPath() + VALIDATOR_EXT);
+    }
+
+    protected FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) { // locked in this JVM
+            return null;
+        }
+    }
+
+    // -----------------------------------------------------
+    //                                                Chunks
+    //                                                ------
+    protected boolean downloadInChunksIfPossible(String url, FileChannel channel, File partFile) throws IOException {
+        if (connections <= 1 || channel.size() > 0) { // a part file is resumed by one stream
+            return false;
+        }
+        final HttpURLConnection head = openHead(url);
+        if (head == null) {
+            return false;
+        }
+        final long size;
+        final String validator;
+        try {
+            size = head.getContentLengthLong();
+            validator = findValidator(head);
+        } finally {
+            head.disconnect();
+        }
+        if (size < minChunkSize * 2 || validator == null) { // ranges from different versions cannot be mixed
+            return false;
+        }
+        final long chunkSize = Math.max((size + connections - 1) / connections, minChunkSize);
+        LogUtil.getLog().info("Downloading " + url + " (" + size + " bytes) by " + connections + " connections");
+        final File chunkedFile = toChunkedFile(partFile);
+        Files.write(chunkedFile.toPath(), new byte[0]); // before preallocation
+        channel.write(ByteBuffer.wrap(new byte[1]), size - 1); // preallocate
+        final ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            final List<Future<Void>> futureList = new ArrayList<Future<Void>>();
+            for (long from = 0; from < size; from += chunkSize) {
+                final long rangeFrom = from;
+                final long rangeTo = Math.min(from + chunkSize, size) - 1;
+                futureList.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        downloadRange(url, validator, channel, rangeFrom, rangeTo);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futureList) {
+                future.get();
+            }
+            if (channel.size() != size) {
+                throw new IOException("Unexpected size of the part file: " + channel.size() + " / " + size + " bytes");
+            }
+            channel.force(false);
+            Files.delete(chunkedFile.toPath()); // complete, so verified and published as a whole
+            return true;
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            final Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            LogUtil.getLog().warn("Could not download by ranges, so download by one stream: " + cause);
+            channel.truncate(0); // holes cannot be resumed
+            Files.delete(chunkedFile.toPath());
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param url the URL of the archive. (NotNull)
+     * @return the response of HEAD if the server accepts byte ranges, or null. (NullAllowed)
+     */
+    protected HttpURLConnection openHead(String url) {
+        try {
+            final URLConnection connection = new URL(url).openConnection();
+            if (!(connection instanceof HttpURLConnection)) {
+                return null;
+            }
+            final HttpURLConnection http = (HttpURLConnection) connection;
+            http.setRequestMethod("HEAD");
+            if (http.getResponseCode() != HttpURLConnection.HTTP_OK
+                    || !"bytes".equalsIgnoreCase(http.getHeaderField("Accept-Ranges"))) {
+                http.disconnect();
+                return null;
+            }
+            return http;
+        } catch (IOException e) { // e.g. HEAD is not allowed
+            LogUtil.getLog().debug("Could not check ranges of " + url + ": " + e);
+            return null;
+        }
+    }
+
+    protected void downloadRange(String url, String validator, FileChannel channel, long from, long to)
+            throws IOException {
+        final HttpURLConnection http = (HttpURLConnection) new URL(url).openConnection();
+        http.setRequestProperty("Range", "bytes=" + from + "-" + to);
+        http.setRequestProperty("If-Range", validator); // 200 if changed after HEAD
+        if (http.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+            http.disconnect();
+            throw new IOException("The range " + from + "-" + to + " is not served: status=" + http.getResponseCode());
+        }
+        long position = from;
+        try (InputStream in = http.getInputStream()) {
+            position = transfer(in, channel, position);
+        }
+        if (position != to + 1) {
+            throw new IOException("Premature end of the range " + from + "-" + to + ": " + (position - from) + " bytes");
+        }
+    }
+
+    // -----------------------------------------------------
+    //                                            One Stream
+    //                                            ----------
+    protected void downloadWithRetry(String url, FileChannel channel, File partFile) throws IOException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                downloadRest(url, channel, partFile);
+                return;
+            } catch (IOException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                LogUtil.getLog().warn("Download was interrupted, retrying (" + attempt + "/" + maxAttempts + "): " + e);
+                try {
+                    Thread.sleep(RETRY_INTERVAL_MILLIS * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    protected void downloadRest(String url, FileChannel channel, File partFile) throws IOException {
+        long position = channel.size();
+        final File validatorFile = toValidatorFile(partFile);
+        final String validator = validatorFile.exists() ? new String(Files.readAllBytes(validatorFile.toPath()),
+                StandardCharsets.UTF_8).trim() : null;
+        final URLConnection connection = new URL(url).openConnection();
+        if (position > 0 && connection instanceof HttpURLConnection && validator != null && !validator.isEmpty()) {
+            LogUtil.getLog().info("Resuming " + url + " from " + position + " bytes");
+            connection.setRequestProperty("Range", "bytes=" + position + "-");
+            connection.setRequestProperty("If-Range", validator); // the whole archive if changed
+        } else {
+            if (position > 0) {
+                LogUtil.getLog().info("The part file cannot be validated, so download from the start.");
+                position = 0;
+                channel.truncate(0);
+            }
+            LogUtil.getLog().info("Downloading " + url);
+        }
+        connection.connect();
+        long expectedSize = connection.getContentLengthLong();
+        if (connection instanceof HttpURLConnection) {
+            final HttpURLConnection http = (HttpURLConnection) connection;
+            final int status = http.getResponseCode();
+            if (status == HttpURLConnection.HTTP_PARTIAL) {
+                expectedSize = expectedSize < 0 ? -1 : position + expectedSize;
+            } else if (status == 416) { // range not satisfiable, the part may be complete
+                http.disconnect();
+                LogUtil.getLog().info("The part file seems to be complete already.");
+                return;
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                if (position > 0) {
+                    LogUtil.getLog().info("The archive was changed or cannot be resumed, so download from the start.");
+                }
+                position = 0;
+                channel.truncate(0);
+                writeValidator(validatorFile, findValidator(http));
+            } else {
+                http.disconnect();
+                throw new IOException("Unexpected HTTP status " + status + " for " + url);
+            }
+        } else {
+            position = 0;
+            channel.truncate(0);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            position = transfer(in, channel, position);
+        }
+        channel.force(false);
+        if (expectedSize >= 0 && position != expectedSize) {
+            throw new IOException("Premature end of the archive: " + position + " / " + expectedSize + " bytes");
+        }
+    }
+
+    /**
+     * @param http the response of the archive. (NotNull)
+     * @return the strong ETag or Last-Modified to resume by If-Range. (NullAllowed: not resumable)
+     */
+    protected String findValidator(HttpURLConnection http) {
+        final String etag = http.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) { // If-Range needs a strong one
+            return etag;
+        }
+        return http.getHeaderField("Last-Modified");
+    }
+
+    protected void writeValidator(File validatorFile, String validator) throws IOException {
+        if (validator != null) {
+            Files.write(validatorFile.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+        } else {
+            Files.deleteIfExists(validatorFile.toPath());
+        }
+    }
+
+    /**
+     * @return the position after the transferred bytes.
+     */
+    protected long transfer(InputStream in, FileChannel channel, long position) throws IOException {
+        final byte[] bytes = new byte[BUF_SIZE];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int n;
+        while ((n = in.read(bytes)) != -1) {
+            buffer.clear();
+            buffer.limit(n);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            transferredBytes.addAndGet(n);
+        }
+        return position;
+    }
+
+    // -----------------------------------------------------
+    //                                                Verify
+    //                                                ------
+    protected void verify(File partFile) throws MojoExecutionException {
+        // the central directory is at the end, so entries are also read to detect holes or spliced content
+        try (ZipFile zip = new ZipFile(partFile)) {
+            final byte[] buf = new byte[BUF_SIZE];
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final CRC32 crc = new CRC32();
+                long size = 0;
+                try (InputStream in = new CheckedInputStream(zip.getInputStream(entry), crc)) {
+                    int n;
+                    while ((n = in.read(buf)) != -1) {
+                        size += n;
+                    }
+                }
+                ResourceUtil.checkEntry(entry, size, crc.getValue());
+            }
+        } catch (IOException e) {
+            if (!partFile.delete()) { // not to resume a broken archive
+                LogUtil.getLog().warn("Could not delete " + partFile.getAbsolutePath());
+            }
+            toValidatorFile(partFile).delete();
+            throw new MojoExecutionException("The downloaded archive is broken: " + partFile.getAbsolutePath(), e);
+        }
+    }
+
+    // ===================================================================================
+    //                                                                              Option
+    //                                                                              ======
+    public ArchiveDownloader specifyConnections(int connections) {
+        this.connections = connections;
+        return this;
+    }
+
+    public ArchiveDownloader specifyMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+}
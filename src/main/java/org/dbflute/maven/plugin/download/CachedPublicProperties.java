@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.dbflute.maven.plugin.officialcopy.DfPublicProperties;
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+
+/**
+ * The public properties cached in a local file.
+ * <pre>
+ * e.g. cacheDir = ~/.m2/dbflute
+ *  public.properties      : the last good copy
+ *  public.properties.meta : url, ETag, Last-Modified and the time of the last check
+ * </pre>
+ * The copy is used without network within the TTL. After that, it is revalidated
+ * by a conditional request, and it is also used when the network is unavailable.
+ */
+public class CachedPublicProperties extends DfPublicProperties {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final String CACHE_FILE_NAME = "public.properties";
+    protected static final String META_EXT = ".meta";
+    protected static final String META_URL = "url";
+    protected static final String META_ETAG = "etag";
+    protected static final String META_LAST_MODIFIED = "lastModified";
+    protected static final String META_CHECKED_TIME = "checkedTime";
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final File cacheFile;
+    protected final File metaFile;
+    protected final long ttlMillis;
+
+    /**
+     * @param cacheDir the directory for the cache file. (NotNull)
+     * @param ttlMinutes the minutes to use the cache without network. (0: always revalidated)
+     */
+    public CachedPublicProperties(File cacheDir, long ttlMinutes) {
+        this.cacheFile = new File(cacheDir, CACHE_FILE_NAME);
+        this.metaFile = new File(cacheDir, CACHE_FILE_NAME + META_EXT);
+        this.ttlMillis = ttlMinutes * 60L * 1000L;
+    }
+
+    // ===================================================================================
+    //                                                                           Load Meta
+    //                                                                           =========
+    @Override
+    public void load() {
+        final String siteUrl = getPublicPropertiesUrl();
+        final Properties meta = loadMeta(siteUrl);
+        if (meta != null && isFresh(meta)) {
+            LogUtil.getLog().debug("Using the cached public properties: " + cacheFile.getAbsolutePath());
+            _publicProp = readProperties(cacheFile);
+            return;
+        }
+        try {
+            revalidate(siteUrl, meta);
+        } catch (IOException e) {
+            if (meta == null) {
+                String msg = "The url threw the IO exception: url=" + siteUrl;
+                throw new IllegalStateException(msg, e);
+            }
+            LogUtil.getLog().warn("Could not connect to " + siteUrl + ", so use the last copy: " + e);
+            _publicProp = readProperties(cacheFile);
+        }
+    }
+
+    protected boolean isFresh(Properties meta) {
+        final long checkedTime = Long.parseLong(meta.getProperty(META_CHECKED_TIME, "0"));
+        return System.currentTimeMillis() - checkedTime < ttlMillis;
+    }
+
+    protected void revalidate(String siteUrl, Properties meta) throws IOException {
+        final URLConnection connection = new URL(siteUrl).openConnection();
+        if (meta != null && connection instanceof HttpURLConnection) {
+            final String etag = meta.getProperty(META_ETAG);
+            if (etag != null) {
+                connection.setRequestProperty("If-None-Match", etag);
+            }
+            final String lastModified = meta.getProperty(META_LAST_MODIFIED);
+            if (lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+        }
+        if (meta != null && connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            ((HttpURLConnection) connection).disconnect();
+            LogUtil.getLog().debug("The cached public properties are not modified.");
+            _publicProp = readProperties(cacheFile);
+            meta.setProperty(META_CHECKED_TIME, String.valueOf(System.currentTimeMillis()));
+            storeMeta(meta);
+            return;
+        }
+        final byte[] content;
+        try (InputStream ins = connection.getInputStream()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[8192];
+            int n;
+            while ((n = ins.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+            content = out.toByteArray();
+        }
+        final Properties prop = new Properties();
+        prop.load(new ByteArrayInputStream(content));
+        _publicProp = prop;
+        storeCache(siteUrl, content, connection);
+    }
+
+    // ===================================================================================
+    //                                                                          Cache File
+    //                                                                          ==========
+    /**
+     * @param siteUrl the URL of public properties. (NotNull)
+     * @return the meta of the cache. (NullAllowed: no cache for the URL)
+     */
+    protected Properties loadMeta(String siteUrl) {
+        if (!cacheFile.isFile() || !metaFile.isFile()) {
+            return null;
+        }
+        try {
+            final Properties meta = readProperties(metaFile);
+            return siteUrl.equals(meta.getProperty(META_URL)) ? meta : null;
+        } catch (IllegalStateException e) { // broken cache is ignored
+            LogUtil.getLog().debug(e);
+            return null;
+        }
+    }
+
+    protected void storeCache(String siteUrl, byte[] content, URLConnection connection) {
+        final Properties meta = new Properties();
+        meta.setProperty(META_URL, siteUrl);
+        final String etag = connection.getHeaderField("ETag");
+        if (etag != null) {
+            meta.setProperty(META_ETAG, etag);
+        }
+        final String lastModified = connection.getHeaderField("Last-Modified");
+        if (lastModified != null) {
+            meta.setProperty(META_LAST_MODIFIED, lastModified);
+        }
+        meta.setProperty(META_CHECKED_TIME, String.valueOf(System.currentTimeMillis()));
+        try {
+            writeAtomically(cacheFile, content);
+            storeMeta(meta);
+        } catch (IOException e) { // the cache is optional
+            LogUtil.getLog().warn("Could not cache public properties: " + cacheFile.getAbsolutePath(), e);
+        }
+    }
+
+    protected void storeMeta(Properties meta) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        meta.store(out, null);
+        writeAtomically(metaFile, out.toByteArray());
+    }
+
+    protected void writeAtomically(File file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        final File tempFile = File.createTempFile("." + file.getName() + "-", ".tmp", file.getParentFile());
+        try {
+            try (OutputStream out = new FileOutputStream(tempFile)) {
+                out.write(content);
+            }
+            ResourceUtil.moveAtomically(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                LogUtil.getLog().debug("Could not delete " + tempFile.getAbsolutePath());
+            }
+        }
+    }
+
+    protected Properties readProperties(File file) {
+        try (InputStream ins = new FileInputStream(file)) {
+            final Properties prop = new Properties();
+            prop.load(ins);
+            return prop;
+        } catch (IOException e) {
+            String msg = "Could not read the cached file: " + file.getAbsolutePath();
+            throw new IllegalStateException(msg, e);
+        }
+    }
+}
@@ -16,10 +16,14 @@
 package org.dbflute.maven.plugin.download;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.dbflute.maven.plugin.DownloadPlugin;
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.MetricsReport;
 
 /**
  * DBFluteDownloader downloads dbflute-*.zip and extracts it.
@@ -36,7 +40,53 @@ public class DBFluteDownloader {
     }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        createEngineDownloadHandler().download();
+        if (!plugin.isAsyncDownload()) {
+            doExecute();
+            return;
+        }
+        final File mydbfluteDir = plugin.getMydbfluteDir();
+        final boolean submitted = PendingDownloads.submit(plugin.getSessionId(), mydbfluteDir, new Callable<Void>() {
+            public Void call() throws Exception {
+                try {
+                    doExecute();
+                } catch (MojoExecutionException | MojoFailureException | RuntimeException e) {
+                    // shown even if no goal waits for it
+                    LogUtil.getLog().warn("Failed to download the engine in background: " + e.getMessage());
+                    throw e;
+                }
+                return null;
+            }
+        });
+        if (submitted) {
+            LogUtil.getLog().info("Downloading the engine in background into " + mydbfluteDir.getAbsolutePath());
+        }
+    }
+
+    protected void doExecute() throws MojoExecutionException, MojoFailureException {
+        final EngineDownloadHandler handler = createEngineDownloadHandler();
+        if (!plugin.isMetrics()) {
+            handler.download();
+            return;
+        }
+        final long startTime = System.currentTimeMillis();
+        final MetricsReport report = new MetricsReport("download");
+        handler.specifyMetricsReport(report).download();
+        report.value("start_time_seconds", startTime / 1000);
+        report.seconds("total_seconds", System.currentTimeMillis() - startTime);
+        writeMetrics(report, startTime);
+    }
+
+    protected void writeMetrics(MetricsReport report, long startTime) {
+        try {
+            final File jsonFile = report.writeJson(plugin.getMetricsDir(), "download-" + startTime);
+            LogUtil.getLog().info("Metrics: " + jsonFile.getAbsolutePath());
+            if (plugin.getMetricsTextfileDir() != null) {
+                report.writePrometheus(plugin.getMetricsTextfileDir(), "dbflute-download");
+            }
+        } catch (IOException e) {
+            // metrics never break the build
+            LogUtil.getLog().warn("Could not write metrics: " + e);
+        }
     }
 
     protected EngineDownloadHandler createEngineDownloadHandler() throws MojoExecutionException, MojoFailureException {
@@ -44,6 +94,15 @@ public class DBFluteDownloader {
         final File mydbfluteDir = plugin.getMydbfluteDir();
         final String downloadFilePrefix = plugin.getDownloadFilePrefix();
         final String downloadUrl = plugin.getDownloadUrl();
-        return new EngineDownloadHandler(dbfluteVersion, mydbfluteDir, downloadFilePrefix, downloadUrl);
+        final EngineDownloadHandler handler = new EngineDownloadHandler(dbfluteVersion, mydbfluteDir, downloadFilePrefix, downloadUrl);
+        if (plugin.getPublicPropTtl() >= 0) {
+            handler.specifyPublicPropCache(plugin.getCacheDir(), plugin.getPublicPropTtl());
+        }
+        handler.specifyExtractThreads(plugin.getExtractThreads());
+        handler.specifyDownloadConnections(plugin.getDownloadConnections());
+        if (plugin.isEngineCache()) {
+            handler.specifyEngineCache(new EngineCache(plugin.getCacheDir()));
+        }
+        return handler;
     }
 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.dbflute.maven.plugin.util.DirectoryLock;
+import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+
+/**
+ * EngineCache is a machine-wide store of extracted DBFlute engines shared by projects.
+ * <pre>
+ * e.g. cacheDir = ~/.m2/dbflute
+ *  engines/dbflute-1.1.0.ref              : the hash of the published archive
+ *  engines/dbflute-1.1.0-3f2a9c0e1b7d4a66 : the extracted engine (never modified after publish)
+ *  engines/.dbflute-1.1.0.zip.part        : the archive being downloaded, resumed by the next build
+ * </pre>
+ * Builds lock the engine by {@link #lockEngine(String)} while downloading and publishing,
+ * so only one of them downloads it.
+ * An engine is extracted into a temporary directory and renamed at once,
+ * so concurrent builds never see a half-extracted engine.
+ */
+public class EngineCache {
+
+    // ===================================================================================
+    //                                                                          Definition
+    //                                                                          ==========
+    protected static final String ENGINES_DIR_NAME = "engines";
+    protected static final String REF_EXT = ".ref";
+    protected static final int HASH_LENGTH = 16;
+    protected static final String LINKED_EXT = ".jar";
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    protected final File enginesDir;
+
+    public EngineCache(File cacheDir) {
+        this.enginesDir = new File(cacheDir, ENGINES_DIR_NAME);
+    }
+
+    // ===================================================================================
+    //                                                                              Lookup
+    //                                                                              ======
+    /**
+     * @param engineName the name of engine containing its version. e.g. dbflute-1.1.0 (NotNull)
+     * @return the published engine directory. (NullAllowed: not published yet)
+     * @throws MojoExecutionException When it fails to read the reference.
+     */
+    public File findEngine(String engineName) throws MojoExecutionException {
+        final File refFile = new File(enginesDir, engineName + REF_EXT);
+        if (!refFile.isFile()) {
+            return null;
+        }
+        final String hash = ResourceUtil.readText(refFile, "UTF-8").trim();
+        final File engineDir = new File(enginesDir, engineName + "-" + hash);
+        return engineDir.isDirectory() ? engineDir : null;
+    }
+
+    // ===================================================================================
+    //                                                                             Publish
+    //                                                                             =======
+    /**
+     * @param engineName the name of engine containing its version. e.g. dbflute-1.1.0 (NotNull)
+     * @return the lock of the engine in the store, to be closed. (NotNull)
+     * @throws MojoExecutionException When it fails to lock.
+     */
+    public DirectoryLock lockEngine(String engineName) throws MojoExecutionException {
+        return DirectoryLock.lock(new File(enginesDir, engineName));
+    }
+
+    /**
+     * @param engineName the name of engine containing its version. e.g. dbflute-1.1.0 (NotNull)
+     * @return the hidden archive file to download, the same name to resume it. (NotNull)
+     * @throws MojoFailureException When it fails to create the directory.
+     */
+    public File getArchiveFile(String engineName) throws MojoFailureException {
+        ResourceUtil.makeDir(enginesDir);
+        return new File(enginesDir, "." + engineName + ".zip");
+    }
+
+    /**
+     * Extract the archive into the store and publish it atomically.
+     * @param engineName the name of engine containing its version. e.g. dbflute-1.1.0 (NotNull)
+     * @param archiveFile the downloaded archive of the engine. (NotNull)
+     * @param extractThreads the number of threads for extraction. (1 or more)
+     * @return the published engine directory. (NotNull)
+     * @throws MojoExecutionException When it fails to extract or publish.
+     * @throws MojoFailureException When it fails to create a directory.
+     */
+    public File publish(String engineName, File archiveFile, int extractThreads) throws MojoExecutionException,
+            MojoFailureException {
+        final String hash = hashArchive(archiveFile);
+        final File engineDir = new File(enginesDir, engineName + "-" + hash);
+        if (!engineDir.isDirectory()) {
+            final File tempDir = new File(enginesDir, "." + engineName + "-" + hash + "-" + System.nanoTime());
+            try {
+                ResourceUtil.unzip(archiveFile, tempDir, extractThreads);
+                moveAtomically(tempDir, engineDir);
+                LogUtil.getLog().info("Published " + engineDir.getAbsolutePath());
+            } catch (FileAlreadyExistsException e) { // published by other build
+                LogUtil.getLog().info(engineDir.getAbsolutePath() + " has been published by other build.");
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not publish " + engineDir.getAbsolutePath(), e);
+            } finally {
+                FileUtils.deleteQuietly(tempDir);
+            }
+        }
+        writeRef(engineName, hash);
+        return engineDir;
+    }
+
+    protected String hashArchive(File archiveFile) throws MojoExecutionException {
+        try (InputStream in = new FileInputStream(archiveFile)) {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                digest.update(buf, 0, n);
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.substring(0, HASH_LENGTH);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read " + archiveFile.getAbsolutePath(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 should be supported.", e);
+        }
+    }
+
+    protected void writeRef(String engineName, String hash) throws MojoExecutionException {
+        final File refFile = new File(enginesDir, engineName + REF_EXT);
+        final File tempRefFile = new File(enginesDir, "." + engineName + REF_EXT + "-" + System.nanoTime());
+        try {
+            Files.write(tempRefFile.toPath(), hash.getBytes(StandardCharsets.UTF_8));
+            ResourceUtil.moveAtomically(tempRefFile, refFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(tempRefFile);
+            throw new MojoExecutionException("Could not write " + refFile.getAbsolutePath(), e);
+        }
+    }
+
+    protected void moveAtomically(File srcDir, File destDir) throws IOException {
+        if (destDir.exists()) {
+            throw new FileAlreadyExistsException(destDir.getAbsolutePath());
+        }
+        try {
+            ResourceUtil.moveAtomically(srcDir, destDir);
+        } catch (IOException e) {
+            if (destDir.isDirectory()) { // e.g. DirectoryNotEmptyException on Linux
+                throw new FileAlreadyExistsException(destDir.getAbsolutePath());
+            }
+            throw e;
+        }
+    }
+
+    // ===================================================================================
+    //                                                                             Install
+    //                                                                             =======
+    /**
+     * Install the published engine into the directory by hard links, or copies if not supported.
+     * The files are linked into a temporary directory that is renamed at the end. <br>
+     * Only jar files, the most of the engine, are linked, because a link shares the content with the cache.
+     * The others, e.g. scripts in etc and templates, are copied to be editable in mydbflute.
+     * (a jar should be replaced by a new file, not overwritten in place)
+     * @param engineDir the published engine directory. (NotNull)
+     * @param destDir the directory to install to. e.g. mydbflute/dbflute-1.1.0 (NotNull)
+     * @throws MojoExecutionException When it fails to install.
+     * @throws MojoFailureException When it fails to create a directory.
+     */
+    public void install(File engineDir, File destDir) throws MojoExecutionException, MojoFailureException {
+        ResourceUtil.makeDir(destDir.getParentFile());
+        final File tempDir = new File(destDir.getParentFile(), "." + destDir.getName() + "-" + System.nanoTime());
+        LogUtil.getLog().info("Linking " + engineDir.getAbsolutePath() + " to " + destDir.getAbsolutePath());
+        try {
+            final Path srcRoot = engineDir.toPath();
+            final Path destRoot = tempDir.toPath();
+            Files.walkFileTree(srcRoot, new SimpleFileVisitor<Path>() {
+                private boolean linkable = true;
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(destRoot.resolve(srcRoot.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    final Path target = destRoot.resolve(srcRoot.relativize(file));
+                    if (linkable && file.getFileName().toString().endsWith(LINKED_EXT)) {
+                        try {
+                            Files.createLink(target, file);
+                            return FileVisitResult.CONTINUE;
+                        } catch (IOException | UnsupportedOperationException e) { // e.g. other file system
+                            LogUtil.getLog().debug("Could not create a hard link, so copy files: " + e);
+                            linkable = false;
+                        }
+                    }
+                    Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            moveAtomically(tempDir, destDir);
+        } catch (FileAlreadyExistsException e) { // installed by other build
+            LogUtil.getLog().info(destDir.getAbsolutePath() + " has been installed by other build.");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not install " + destDir.getAbsolutePath(), e);
+        } finally {
+            FileUtils.deleteQuietly(tempDir);
+        }
+    }
+}
@@ -16,11 +16,15 @@
 package org.dbflute.maven.plugin.download;
 
 import java.io.File;
+import java.io.IOException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.dbflute.maven.plugin.officialcopy.DfPublicProperties;
+import org.dbflute.maven.plugin.util.DirectoryLock;
 import org.dbflute.maven.plugin.util.LogUtil;
+import org.dbflute.maven.plugin.util.MetricsReport;
 import org.dbflute.maven.plugin.util.ResourceUtil;
 
 /**
@@ -36,6 +40,24 @@ public class EngineDownloadHandler {
     /** public properties that contains version info, and DBFlute provides officially (NullAllowed: lazy-loaded) */
     protected DfPublicProperties cachedPublicProp;
 
+    /** the directory to cache public properties (NullAllowed: then loaded every time) */
+    protected File publicPropCacheDir;
+
+    /** the minutes to use cached public properties without network */
+    protected long publicPropTtl;
+
+    /** the number of threads to extract the engine */
+    protected int extractThreads = 1;
+
+    /** the number of concurrent connections to download the engine */
+    protected int downloadConnections = 1;
+
+    /** machine-wide store of engines shared by projects (NullAllowed: then not cached) */
+    protected EngineCache engineCache;
+
+    /** the report to record throughput of download and extraction (NullAllowed: then not recorded) */
+    protected MetricsReport metricsReport;
+
     public EngineDownloadHandler(String dbfluteVersion, File mydbfluteDir, String downloadFilePrefix, String downloadUrl) {
         this.dbfluteVersion = dbfluteVersion;
         this.mydbfluteDir = mydbfluteDir;
@@ -52,27 +74,150 @@ public class EngineDownloadHandler {
             LogUtil.getLog().info("Using DBFlute latest release version: " + dbfluteVersion);
         }
         File dbfluteDir = new File(mydbfluteDir, downloadFilePrefix + dbfluteVersion);
-        if (!dbfluteDir.exists()) {
+        // checked again in the lock, other module or process may be creating it
+        final DirectoryLock lock = DirectoryLock.lock(dbfluteDir);
+        try {
+            if (!dbfluteDir.exists()) {
+                LogUtil.getLog().info("Creating " + dbfluteDir.getAbsolutePath());
+                if (engineCache != null) {
+                    installFromEngineCache(dbfluteDir);
+                } else {
+                    downloadAndExtract(dbfluteDir);
+                }
+            } else {
+                LogUtil.getLog().info(dbfluteDir.getAbsolutePath() + " exists.");
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    protected String prepareDownloadUrl() throws MojoFailureException {
+        if (downloadUrl == null) {
+            downloadUrl = preparePublicProp().getDBFluteDownloadUrl(dbfluteVersion);
             if (downloadUrl == null) {
-                downloadUrl = preparePublicProp().getDBFluteDownloadUrl(dbfluteVersion);
-                if (downloadUrl == null) {
-                    throw new MojoFailureException(
-                            "Set <downloadUrl> in pom.xml of "
-                                    + "-Ddbflute.downloadUrl=http://dbflute.org/download/dbflute/dbflute-$$version$$.zip.");
+                throw new MojoFailureException(
+                        "Set <downloadUrl> in pom.xml of "
+                                + "-Ddbflute.downloadUrl=http://dbflute.org/download/dbflute/dbflute-$$version$$.zip.");
+            }
+        }
+        return downloadUrl;
+    }
+
+    protected void installFromEngineCache(File dbfluteDir) throws MojoExecutionException, MojoFailureException {
+        final String engineName = dbfluteDir.getName();
+        File engineDir = engineCache.findEngine(engineName);
+        if (engineDir == null) {
+            // other projects wait here, and find the engine published by the first one
+            final DirectoryLock lock = engineCache.lockEngine(engineName);
+            try {
+                engineDir = engineCache.findEngine(engineName);
+                if (engineDir == null) {
+                    engineDir = downloadIntoEngineCache(engineName);
                 }
+            } finally {
+                lock.close();
             }
-            LogUtil.getLog().info("Creating " + dbfluteDir.getAbsolutePath());
-            ResourceUtil.unzip(downloadUrl, dbfluteDir);
         } else {
-            LogUtil.getLog().info(dbfluteDir.getAbsolutePath() + " exists.");
+            LogUtil.getLog().info("Using the cached engine: " + engineDir.getAbsolutePath());
+            recordCacheHit(true);
+        }
+        engineCache.install(engineDir, dbfluteDir);
+    }
+
+    protected File downloadIntoEngineCache(String engineName) throws MojoExecutionException, MojoFailureException {
+        // the part file is kept if interrupted, and resumed by the next build
+        final File archiveFile = engineCache.getArchiveFile(engineName);
+        try {
+            final long startTime = System.currentTimeMillis();
+            final long bytes = createArchiveDownloader().download(prepareDownloadUrl(), archiveFile);
+            final long downloadedTime = System.currentTimeMillis();
+            final File engineDir = engineCache.publish(engineName, archiveFile, extractThreads);
+            recordCacheHit(false);
+            recordDownload(bytes, downloadedTime - startTime);
+            recordExtract(-1, System.currentTimeMillis() - downloadedTime);
+            return engineDir;
+        } finally {
+            if (archiveFile.exists() && !archiveFile.delete()) {
+                LogUtil.getLog().warn("Could not delete " + archiveFile.getAbsolutePath());
+            }
+        }
+    }
+
+    protected void downloadAndExtract(File dbfluteDir) throws MojoExecutionException, MojoFailureException {
+        // hidden names not to be treated as an engine, resumed if the previous download was interrupted
+        ResourceUtil.makeDir(mydbfluteDir);
+        final File archiveFile = new File(mydbfluteDir, "." + dbfluteDir.getName() + ".zip");
+        final long startTime = System.currentTimeMillis();
+        final long bytes = createArchiveDownloader().download(prepareDownloadUrl(), archiveFile);
+        final long downloadedTime = System.currentTimeMillis();
+        recordCacheHit(false);
+        recordDownload(bytes, downloadedTime - startTime);
+        final File tempDir = new File(mydbfluteDir, "." + dbfluteDir.getName() + "-" + System.nanoTime());
+        try {
+            final long extractedBytes = ResourceUtil.unzip(archiveFile, tempDir, extractThreads);
+            ResourceUtil.moveAtomically(tempDir, dbfluteDir);
+            recordExtract(extractedBytes, System.currentTimeMillis() - downloadedTime);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not create " + dbfluteDir.getAbsolutePath(), e);
+        } finally {
+            FileUtils.deleteQuietly(tempDir);
+            if (!archiveFile.delete()) {
+                LogUtil.getLog().warn("Could not delete " + archiveFile.getAbsolutePath());
+            }
         }
     }
 
+    /**
+     * @param hit true if the engine is found in the engine cache, always false without the cache.
+     */
+    protected void recordCacheHit(boolean hit) {
+        if (metricsReport != null) {
+            metricsReport.value("engine_cache_hit", hit ? 1 : 0);
+        }
+    }
+
+    /**
+     * @param bytes the bytes received actually, not including the resumed part.
+     * @param millis the elapsed time of download.
+     */
+    protected void recordDownload(long bytes, long millis) {
+        if (metricsReport != null) {
+            metricsReport.value("download_bytes", bytes).seconds("download_seconds", millis);
+            metricsReport.value("download_bytes_per_second", bytes * 1000 / Math.max(millis, 1));
+        }
+    }
+
+    /**
+     * @param bytes the extracted bytes. (-1: unknown, e.g. extracted in the engine cache)
+     * @param millis the elapsed time of extraction.
+     */
+    protected void recordExtract(long bytes, long millis) {
+        if (metricsReport != null) {
+            metricsReport.seconds("extract_seconds", millis);
+            if (bytes >= 0) {
+                metricsReport.value("extract_bytes", bytes);
+                metricsReport.value("extract_bytes_per_second", bytes * 1000 / Math.max(millis, 1));
+            }
+        }
+    }
+
+    protected ArchiveDownloader createArchiveDownloader() {
+        return new ArchiveDownloader().specifyConnections(downloadConnections);
+    }
+
+    protected DfPublicProperties createPublicProperties() {
+        if (publicPropCacheDir != null) {
+            return new CachedPublicProperties(publicPropCacheDir, publicPropTtl);
+        }
+        return new DfPublicProperties();
+    }
+
     private DfPublicProperties preparePublicProp() throws MojoFailureException {
         try {
             if (cachedPublicProp == null) {
                 LogUtil.getLog().info("...Loading public properties");
-                cachedPublicProp = new DfPublicProperties();
+                cachedPublicProp = createPublicProperties();
                 cachedPublicProp.load();
             }
             return cachedPublicProp;
@@ -80,4 +225,33 @@ public class EngineDownloadHandler {
             throw new MojoFailureException("Failed to handle public properties", e);
         }
     }
+
+    // ===================================================================================
+    //                                                                              Option
+    //                                                                              ======
+    public EngineDownloadHandler specifyPublicPropCache(File cacheDir, long ttlMinutes) {
+        this.publicPropCacheDir = cacheDir;
+        this.publicPropTtl = ttlMinutes;
+        return this;
+    }
+
+    public EngineDownloadHandler specifyExtractThreads(int extractThreads) {
+        this.extractThreads = extractThreads;
+        return this;
+    }
+
+    public EngineDownloadHandler specifyDownloadConnections(int downloadConnections) {
+        this.downloadConnections = downloadConnections;
+        return this;
+    }
+
+    public EngineDownloadHandler specifyEngineCache(EngineCache engineCache) {
+        this.engineCache = engineCache;
+        return this;
+    }
+
+    public EngineDownloadHandler specifyMetricsReport(MetricsReport metricsReport) {
+        this.metricsReport = metricsReport;
+        return this;
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.dbflute.maven.plugin.util.LogUtil;
+
+/**
+ * PendingDownloads holds downloads of the engine running in background, keyed by session and mydbflute directory.
+ * <pre>
+ * e.g. download goal with asyncDownload in validate phase
+ *  submit(session, mydbflute, download) : returns at once, the download runs in a daemon thread
+ *  (other modules are compiled)
+ *  await(session, mydbflute)            : create-client and command goals wait only here
+ * </pre>
+ * Modules in a reactor share the plugin class loader, so the downloads are visible to later goals.
+ * The key is mydbflute directory, not the engine, because the version may be resolved by the download itself.
+ * Finished downloads of other sessions are forgotten, so a long-lived JVM (e.g. embedded Maven) never sees an old result.
+ * Running ones are kept, because their session may be running at the same time and wait for them later.
+ */
+public class PendingDownloads {
+
+    // ===================================================================================
+    //                                                                           Attribute
+    //                                                                           =========
+    private static final ConcurrentMap<String, FutureTask<Void>> DOWNLOAD_MAP = new ConcurrentHashMap<String, FutureTask<Void>>();
+
+    private PendingDownloads() {
+    }
+
+    // ===================================================================================
+    //                                                                              Submit
+    //                                                                              ======
+    /**
+     * Start the download in background unless the download for the directory is running.
+     * @param session the identity of the Maven session. (NotNull)
+     * @param mydbfluteDir the directory that the engine is extracted into. (NotNull)
+     * @param download the download of the engine. (NotNull)
+     * @return true if started, false if already running.
+     */
+    public static boolean submit(String session, File mydbfluteDir, Callable<Void> download) {
+        forgetOtherSessions(session);
+        final String key = toKey(session, mydbfluteDir);
+        final FutureTask<Void> task = new FutureTask<Void>(download);
+        while (true) {
+            final FutureTask<Void> existing = DOWNLOAD_MAP.putIfAbsent(key, task);
+            if (existing == null) {
+                break;
+            }
+            if (!existing.isDone()) {
+                return false;
+            }
+            // finished one, e.g. by the download goal bound twice
+            DOWNLOAD_MAP.remove(key, existing);
+        }
+        // the log is inherited by the new thread
+        final Thread thread = new Thread(task, "dbflute-download");
+        thread.setDaemon(true); // an interrupted download is resumed or retried by the next build
+        thread.start();
+        return true;
+    }
+
+    // ===================================================================================
+    //                                                                               Await
+    //                                                                               =====
+    /**
+     * Wait for the download for the directory if it is submitted in the session.
+     * @param session the identity of the Maven session. (NotNull)
+     * @param mydbfluteDir the directory that the engine is extracted into. (NotNull)
+     * @throws MojoExecutionException When the download throws it.
+     * @throws MojoFailureException When the download throws it.
+     */
+    public static void await(String session, File mydbfluteDir) throws MojoExecutionException, MojoFailureException {
+        forgetOtherSessions(session);
+        final FutureTask<Void> task = DOWNLOAD_MAP.get(toKey(session, mydbfluteDir));
+        if (task == null) {
+            return;
+        }
+        if (!task.isDone()) {
+            LogUtil.getLog().info("...Waiting for the engine download in background");
+        }
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof MojoExecutionException) {
+                throw (MojoExecutionException) cause;
+            } else if (cause instanceof MojoFailureException) {
+                throw (MojoFailureException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException("Failed to download the engine.", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted.", e);
+        }
+    }
+
+    private static void forgetOtherSessions(String session) {
+        final String sessionPrefix = session + "|";
+        for (Iterator<Entry<String, FutureTask<Void>>> it = DOWNLOAD_MAP.entrySet().iterator(); it.hasNext();) {
+            final Entry<String, FutureTask<Void>> entry = it.next();
+            if (!entry.getKey().startsWith(sessionPrefix) && entry.getValue().isDone()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String toKey(String session, File mydbfluteDir) {
+        String path;
+        try {
+            path = mydbfluteDir.getCanonicalPath();
+        } catch (IOException e) {
+            path = mydbfluteDir.getAbsolutePath();
+        }
+        return session + "|" + path;
+    }
+}
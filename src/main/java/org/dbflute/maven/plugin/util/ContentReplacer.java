@@ -0,0 +1,397 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * ContentReplacer replaces contents by regular expressions in one pass.
+ * 
+ * The content is scanned once however many keys there are, and the replacer
+ * can be shared by threads to replace many files. If every key starts with
+ * literal characters, e.g. @database@ or torque.project *= *..., candidates
+ * are found by a literal scan of the first characters and the prefixes, and
+ * only there each key is matched by its own pattern, in the order of the keys.
+ * Otherwise the keys are compiled into one alternation, which tries every key
+ * at every position and is slower than a literal scan. A value is a replacement string of
+ * {@link Matcher#replaceAll(String)}, so \ and $ should be escaped and $n
+ * refers to a group of its own key.
+ * 
+ * Unlike String#replaceAll() per key, a replaced value is not matched again
+ * by the other keys. A key should not have a numbered back reference,
+ * because its groups are renumbered in the alternation.
+ * 
+ * A stream is replaced in windows of fixed size, so the memory does not grow
+ * with the size of the content. A match across windows is found because
+ * the window keeps its tail as long as the maximum match length, and
+ * the same length of text before it for lookbehind and boundaries.
+ * A match longer than the maximum length is not supported on a stream.
+ */
+public class ContentReplacer {
+
+    /** the default maximum length of a match on a stream */
+    public static final int DEFAULT_MAX_MATCH_LENGTH = 8 * 1024;
+
+    /** the size of a window to read on a stream */
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final int maxMatchLength;
+
+    private final Pattern[] keyPatterns;
+
+    private final String[] values;
+
+    /** the group index of each key in the alternation */
+    private final int[] groupIndexes;
+
+    /** the number of groups in each key */
+    private final int[] groupCounts;
+
+    private final Pattern pattern; // null if no keys
+
+    /** the literal prefix of each key (NullAllowed: then the alternation is used) */
+    private final String[] prefixes;
+
+    /** true at the first character of a prefix, indexed by the character */
+    private final boolean[] firstChars;
+
+    /**
+     * @param params the map of a regular expression and its replacement. (NotNull)
+     */
+    public ContentReplacer(Map<String, String> params) {
+        this(params, DEFAULT_MAX_MATCH_LENGTH);
+    }
+
+    /**
+     * @param params the map of a regular expression and its replacement. (NotNull)
+     * @param maxMatchLength the maximum length of a match on a stream. (1 or more)
+     */
+    public ContentReplacer(Map<String, String> params, int maxMatchLength) {
+        if (maxMatchLength < 1) {
+            throw new IllegalArgumentException("maxMatchLength: "
+                    + maxMatchLength);
+        }
+        this.maxMatchLength = maxMatchLength;
+        keyPatterns = new Pattern[params.size()];
+        values = new String[params.size()];
+        groupIndexes = new int[params.size()];
+        groupCounts = new int[params.size()];
+        StringBuilder sb = new StringBuilder();
+        int index = 0;
+        int groupIndex = 1;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            keyPatterns[index] = Pattern.compile(entry.getKey());
+            values[index] = entry.getValue();
+            groupIndexes[index] = groupIndex;
+            if (index > 0) {
+                sb.append('|');
+            }
+            sb.append('(').append(entry.getKey()).append(')');
+            groupCounts[index] = keyPatterns[index].matcher("").groupCount();
+            groupIndex += 1 + groupCounts[index];
+            index++;
+        }
+        pattern = index > 0 ? Pattern.compile(sb.toString()) : null;
+
+        String[] prefixes = new String[params.size()];
+        int maxFirstChar = -1;
+        index = 0;
+        for (String key : params.keySet()) {
+            prefixes[index] = extractLiteralPrefix(key);
+            if (prefixes[index].isEmpty()) {
+                prefixes = null;
+                break;
+            }
+            maxFirstChar = Math.max(maxFirstChar, prefixes[index].charAt(0));
+            index++;
+        }
+        this.prefixes = pattern != null ? prefixes : null;
+        if (this.prefixes != null) {
+            firstChars = new boolean[maxFirstChar + 1];
+            for (String prefix : prefixes) {
+                firstChars[prefix.charAt(0)] = true;
+            }
+        } else {
+            firstChars = null;
+        }
+    }
+
+    /**
+     * @param key the regular expression. (NotNull)
+     * @return the characters that every match of the key starts with. (NotNull, EmptyAllowed)
+     */
+    protected static String extractLiteralPrefix(String key) {
+        if (key.indexOf('|') >= 0) { // the prefix may be one of the alternatives
+            return "";
+        }
+        int end = 0;
+        while (end < key.length() && "\\^$.|?*+()[]{}".indexOf(key.charAt(end)) < 0) {
+            end++;
+        }
+        if (end < key.length() && "?*+{".indexOf(key.charAt(end)) >= 0) {
+            end--; // the last character is quantified, e.g. ab*
+        }
+        return key.substring(0, Math.max(end, 0));
+    }
+
+    /**
+     * @param content the content to be replaced. (NotNull)
+     * @return the replaced content. (NotNull)
+     */
+    public String replace(CharSequence content) {
+        if (pattern == null) {
+            return content.toString();
+        }
+        String text = content.toString();
+        Scanner scanner = new Scanner(text, 0);
+        if (!scanner.find()) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 256);
+        int last = 0;
+        do {
+            sb.append(text, last, scanner.start());
+            sb.append(scanner.replacement());
+            last = scanner.end();
+        } while (scanner.find());
+        sb.append(text, last, text.length());
+        return sb.toString();
+    }
+
+    /**
+     * Replace the stream in windows, the memory is bounded by the maximum match length.
+     * 
+     * @param in the content to be replaced. (NotNull)
+     * @param out the replaced content. (NotNull)
+     * @throws IOException When it fails to read or write.
+     */
+    public void replace(Reader in, Writer out) throws IOException {
+        if (pattern == null) {
+            IOUtils.copyLarge(in, out, new char[WINDOW_SIZE]);
+            return;
+        }
+        int windowSize = Math.max(WINDOW_SIZE, maxMatchLength * 2);
+        char[] chunk = new char[windowSize];
+        StringBuilder window = new StringBuilder(windowSize + maxMatchLength
+                * 2);
+        int start = 0; // before it is only the context for lookbehind
+        boolean eof = false;
+        while (true) {
+            while (!eof && window.length() - start < windowSize) {
+                int n = in.read(chunk, 0,
+                        Math.min(chunk.length, windowSize + start
+                                - window.length()));
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    window.append(chunk, 0, n);
+                }
+            }
+
+            // a match starting after the limit may continue into the next window
+            int limit = eof ? window.length() : window.length()
+                    - maxMatchLength;
+            // a String is matched faster than a StringBuilder
+            String text = window.toString();
+            Scanner scanner = new Scanner(text, start);
+            int last = start;
+            while (scanner.find()) {
+                if (!eof && scanner.start() >= limit) {
+                    break;
+                }
+                out.write(text, last, scanner.start() - last);
+                out.write(scanner.replacement());
+                last = scanner.end();
+            }
+            if (eof) {
+                out.write(text, last, text.length() - last);
+                return;
+            }
+            int written = Math.max(last, limit);
+            out.write(text, last, written - last);
+
+            int contextStart = Math.max(written - maxMatchLength, 0);
+            window.delete(0, contextStart);
+            start = written - contextStart;
+        }
+    }
+
+    /**
+     * Scanner finds matches of the keys in the text from the start, by the literal scan
+     * or the alternation. The text before the start is only the context for lookbehind.
+     */
+    private class Scanner {
+
+        private final String text;
+
+        private final Matcher matcher; // of the alternation, null if literal scan
+
+        private final Matcher[] keyMatchers; // created at the first candidate
+
+        private int position;
+
+        private Matcher found;
+
+        private int foundKeyIndex;
+
+        public Scanner(String text, int start) {
+            this.text = text;
+            if (prefixes == null) {
+                matcher = newMatcher(pattern, start);
+                keyMatchers = null;
+            } else {
+                matcher = null;
+                keyMatchers = new Matcher[keyPatterns.length];
+            }
+            position = start;
+        }
+
+        private Matcher newMatcher(Pattern keyPattern, int start) {
+            Matcher newMatcher = keyPattern.matcher(text);
+            newMatcher.useTransparentBounds(true);
+            newMatcher.useAnchoringBounds(false);
+            newMatcher.region(start, text.length());
+            return newMatcher;
+        }
+
+        public boolean find() {
+            if (matcher != null) {
+                if (!matcher.find()) {
+                    return false;
+                }
+                found = matcher;
+                for (int i = 0; i < keyPatterns.length; i++) {
+                    if (matcher.start(groupIndexes[i]) >= 0) {
+                        foundKeyIndex = i;
+                        break;
+                    }
+                }
+                return true;
+            }
+            int length = text.length();
+            for (int i = position; i < length; i++) {
+                char ch = text.charAt(i);
+                if (ch >= firstChars.length || !firstChars[ch]) {
+                    continue;
+                }
+                // the first key matching here, as the alternation does
+                for (int k = 0; k < prefixes.length; k++) {
+                    if (!text.startsWith(prefixes[k], i)) {
+                        continue;
+                    }
+                    if (keyMatchers[k] == null) {
+                        keyMatchers[k] = newMatcher(keyPatterns[k], i);
+                    } else {
+                        keyMatchers[k].region(i, length);
+                    }
+                    if (keyMatchers[k].lookingAt()) {
+                        found = keyMatchers[k];
+                        foundKeyIndex = k;
+                        position = found.end(); // not empty, the prefix is matched
+                        return true;
+                    }
+                }
+            }
+            position = length;
+            return false;
+        }
+
+        public int start() {
+            return found.start();
+        }
+
+        public int end() {
+            return found.end();
+        }
+
+        public String replacement() {
+            // the groups of the key start at its group in the alternation
+            int base = matcher != null ? groupIndexes[foundKeyIndex] : 0;
+            return expand(found, foundKeyIndex, base);
+        }
+    }
+
+    /**
+     * Expand the value of the key as {@link Matcher#appendReplacement(StringBuffer, String)},
+     * $n refers to the group of the key from the base group.
+     */
+    private String expand(Matcher matcher, int keyIndex, int base) {
+        String value = values[keyIndex];
+        int groupCount = groupCounts[keyIndex];
+        StringBuilder sb = new StringBuilder(value.length() + 16);
+        int pos = 0;
+        while (pos < value.length()) {
+            char ch = value.charAt(pos++);
+            if (ch == '\\') {
+                if (pos == value.length()) {
+                    throw new IllegalArgumentException(
+                            "character to be escaped is missing: " + value);
+                }
+                sb.append(value.charAt(pos++));
+            } else if (ch == '$') {
+                if (pos == value.length()) {
+                    throw new IllegalArgumentException(
+                            "Illegal group reference: group index is missing: "
+                                    + value);
+                }
+                String group;
+                if (value.charAt(pos) == '{') {
+                    int close = value.indexOf('}', pos);
+                    if (close < 0) {
+                        throw new IllegalArgumentException(
+                                "named capturing group is missing trailing '}': "
+                                        + value);
+                    }
+                    group = matcher.group(value.substring(pos + 1, close));
+                    pos = close + 1;
+                } else {
+                    int ref = value.charAt(pos++) - '0';
+                    if (ref < 0 || ref > 9) {
+                        throw new IllegalArgumentException(
+                                "Illegal group reference: " + value);
+                    }
+                    // the longest number in the groups, as Matcher does
+                    while (pos < value.length()) {
+                        int digit = value.charAt(pos) - '0';
+                        if (digit < 0 || digit > 9
+                                || ref * 10 + digit > groupCount) {
+                            break;
+                        }
+                        ref = ref * 10 + digit;
+                        pos++;
+                    }
+                    if (ref > groupCount) {
+                        throw new IndexOutOfBoundsException("No group " + ref);
+                    }
+                    group = matcher.group(base + ref);
+                }
+                if (group != null) {
+                    sb.append(group);
+                }
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * DirectoryLock is an exclusive lock of a directory among threads and processes.
+ * 
+ * Threads in this JVM are serialized by a lock per canonical path, because
+ * a file lock is held by the whole JVM. Other processes, e.g. another Maven
+ * build on the same machine, are serialized by a lock file under
+ * ${user.home}/.m2/dbflute/locks, so the directory itself is not touched.
+ * The lock directory is per user, because a shared one is owned by the user
+ * who created it first. If no lock file can be created, only threads in this
+ * JVM are serialized. The lock is reentrant in the same thread.
+ * 
+ * <pre>
+ * DirectoryLock lock = DirectoryLock.lock(dbfluteClientDir);
+ * try {
+ *     ...
+ * } finally {
+ *     lock.close();
+ * }
+ * </pre>
+ */
+public class DirectoryLock implements Closeable {
+
+    private static final ConcurrentMap<String, ReentrantLock> LOCK_MAP = new ConcurrentHashMap<String, ReentrantLock>();
+
+    private final ReentrantLock threadLock;
+
+    private final FileChannel channel; // null if reentered
+
+    private final FileLock fileLock; // null if reentered
+
+    private DirectoryLock(ReentrantLock threadLock, FileChannel channel,
+            FileLock fileLock) {
+        this.threadLock = threadLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Lock the directory, waiting for other threads and processes.
+     * 
+     * @param dir the directory to lock. (NotNull, NotRequiredExistence)
+     * @return the lock to be closed. (NotNull)
+     * @throws MojoExecutionException When it fails to lock.
+     */
+    public static DirectoryLock lock(File dir) throws MojoExecutionException {
+        String path;
+        try {
+            path = dir.getCanonicalPath();
+        } catch (IOException e) {
+            path = dir.getAbsolutePath();
+        }
+
+        ReentrantLock threadLock = LOCK_MAP.get(path);
+        if (threadLock == null) {
+            ReentrantLock newLock = new ReentrantLock();
+            threadLock = LOCK_MAP.putIfAbsent(path, newLock);
+            if (threadLock == null) {
+                threadLock = newLock;
+            }
+        }
+        if (!threadLock.tryLock()) {
+            LogUtil.getLog().info("Waiting for other build using " + path);
+            threadLock.lock();
+        }
+        if (threadLock.getHoldCount() > 1) {
+            return new DirectoryLock(threadLock, null, null);
+        }
+
+        FileChannel channel = null;
+        try {
+            File lockFile = new File(getLockDir(), sha1(path) + ".lock");
+            try {
+                channel = FileChannel.open(lockFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                // e.g. read-only home, the build is not blocked by the lock
+                LogUtil.getLog().warn(
+                        "Could not create " + lockFile.getAbsolutePath()
+                                + ", so " + path
+                                + " is locked only in this JVM: " + e);
+                return new DirectoryLock(threadLock, null, null);
+            }
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                LogUtil.getLog().info(
+                        "Waiting for other process using " + path);
+                fileLock = channel.lock();
+            }
+            return new DirectoryLock(threadLock, channel, fileLock);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            threadLock.unlock();
+            throw new MojoExecutionException("Could not lock " + path, e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            threadLock.unlock();
+            throw e;
+        }
+    }
+
+    private static File getLockDir() {
+        File lockDir = new File(System.getProperty("user.home"),
+                ".m2/dbflute/locks");
+        try {
+            Files.createDirectories(lockDir.toPath());
+        } catch (IOException e) {
+            // handled when the lock file cannot be created
+            LogUtil.getLog().debug(e);
+        }
+        return lockDir;
+    }
+
+    private static String sha1(String path) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest(path.getBytes(StandardCharsets.UTF_8))) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 should be supported.", e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LogUtil.getLog().debug(e);
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            if (fileLock != null) { // null if reentered or locked only in this JVM
+                try {
+                    fileLock.release();
+                } catch (IOException e) {
+                    LogUtil.getLog().debug(e);
+                }
+                // the lock file is left, deleting it races with other processes
+                closeQuietly(channel);
+            }
+        } finally {
+            threadLock.unlock();
+        }
+    }
+}
@@ -21,20 +21,26 @@ import org.apache.maven.plugin.logging.SystemStreamLog;
 /**
  * LogUtil manages Maven's Log instance.
  * 
+ * The Log is held per thread because mojos run on several threads
+ * in a parallel build. Threads created by a mojo inherit its Log,
+ * but pooled threads should be given the Log explicitly.
+ * 
  * @author shinsuke
  *
  */
 public class LogUtil {
-    private static Log log;
+    private static final ThreadLocal<Log> LOG_LOCAL = new InheritableThreadLocal<Log>();
 
     public static Log getLog() {
+        Log log = LOG_LOCAL.get();
         if (log == null) {
             log = new SystemStreamLog();
+            LOG_LOCAL.set(log);
         }
         return log;
     }
 
     public static void init(Log log) {
-        LogUtil.log = log;
+        LOG_LOCAL.set(log);
     }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * MetricsReport is a flat set of labels and values measured in an execution.
+ * 
+ * It is written as JSON for a build, and as a Prometheus textfile
+ * for the textfile collector of node_exporter. Keys are in snake case
+ * with units, e.g. run_seconds, and become metric names like
+ * dbflute_command_run_seconds with the labels in the textfile.
+ */
+public class MetricsReport {
+
+    private final String name;
+
+    private final Map<String, String> labelMap = new LinkedHashMap<String, String>();
+
+    private final Map<String, Number> valueMap = new LinkedHashMap<String, Number>();
+
+    /**
+     * @param name the name of the report. e.g. command, download (NotNull)
+     */
+    public MetricsReport(String name) {
+        this.name = name;
+    }
+
+    public synchronized MetricsReport label(String key, String value) {
+        labelMap.put(key, value != null ? value : "");
+        return this;
+    }
+
+    public synchronized MetricsReport value(String key, Number value) {
+        valueMap.put(key, value);
+        return this;
+    }
+
+    /**
+     * @param key the key of the value. (NotNull)
+     * @param millis the elapsed milliseconds to be seconds.
+     * @return this.
+     */
+    public MetricsReport seconds(String key, long millis) {
+        return value(key, millis / 1000.0);
+    }
+
+    public synchronized Number getValue(String key) {
+        return valueMap.get(key);
+    }
+
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"name\": ").append(quote(name));
+        for (Map.Entry<String, String> entry : labelMap.entrySet()) {
+            sb.append(",\n  ").append(quote(entry.getKey())).append(": ")
+                    .append(quote(entry.getValue()));
+        }
+        for (Map.Entry<String, Number> entry : valueMap.entrySet()) {
+            sb.append(",\n  ").append(quote(entry.getKey())).append(": ")
+                    .append(entry.getValue());
+        }
+        return sb.append("\n}\n").toString();
+    }
+
+    public synchronized String toPrometheus() {
+        StringBuilder labels = new StringBuilder();
+        for (Map.Entry<String, String> entry : labelMap.entrySet()) {
+            labels.append(labels.length() == 0 ? "{" : ",")
+                    .append(entry.getKey()).append('=')
+                    .append(quote(entry.getValue()));
+        }
+        if (labels.length() > 0) {
+            labels.append('}');
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Number> entry : valueMap.entrySet()) {
+            String metricName = "dbflute_" + name + "_" + entry.getKey();
+            sb.append("# TYPE ").append(metricName).append(" gauge\n");
+            sb.append(metricName).append(labels).append(' ')
+                    .append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String str) {
+        StringBuilder sb = new StringBuilder(str.length() + 2).append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                sb.append('\\').append(ch);
+            } else if (ch == '\n') {
+                sb.append("\\n");
+            } else if (ch < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Write the report as JSON. The file appears atomically.
+     * 
+     * @param dir the directory to write. (NotNull)
+     * @param baseName the file name without extension. (NotNull)
+     * @return the written file. (NotNull)
+     * @throws IOException When it fails to write.
+     */
+    public File writeJson(File dir, String baseName) throws IOException {
+        return write(dir, baseName + ".json", toJson());
+    }
+
+    /**
+     * Write the report as a Prometheus textfile, replacing the last one.
+     * The collector never reads a half-written file because it appears atomically.
+     * 
+     * @param dir the directory of the textfile collector. (NotNull)
+     * @param baseName the file name without extension. (NotNull)
+     * @return the written file. (NotNull)
+     * @throws IOException When it fails to write.
+     */
+    public File writePrometheus(File dir, String baseName) throws IOException {
+        return write(dir, baseName + ".prom", toPrometheus());
+    }
+
+    private static File write(File dir, String fileName, String content)
+            throws IOException {
+        Files.createDirectories(dir.toPath());
+        File file = new File(dir, fileName);
+        // not *.prom not to be collected while writing
+        File tempFile = new File(dir, "." + fileName + "-" + System.nanoTime());
+        try {
+            Files.write(tempFile.toPath(),
+                    content.getBytes(StandardCharsets.UTF_8));
+            ResourceUtil.moveAtomically(tempFile, file,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        return file;
+    }
+}
@@ -15,9 +15,8 @@
  */
 package org.dbflute.maven.plugin.util;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -25,14 +24,43 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.dbflute.maven.plugin.PluginSystemException;
 
 /**
  * A utility class to handling a resource.
@@ -43,6 +71,8 @@ import org.apache.maven.plugin.MojoFailureException;
 public class ResourceUtil {
     private static final int BUF_SIZE = 8192;
 
+    private static final int COPY_BUF_SIZE = 64 * 1024;
+
     public static void makeDir(File dir) throws MojoFailureException {
         if (dir.isDirectory()) {
             return;
@@ -54,86 +84,223 @@ public class ResourceUtil {
         }
     }
 
-    public static File createTempDir(String prefix, String suffix)
-            throws MojoExecutionException, MojoFailureException {
-        // create temp dir
-        File tempDir = null;
-        try {
-            tempDir = File.createTempFile("dbflute-client", "");
-        } catch (IOException e) {
-            throw new MojoExecutionException(
-                    "Could not create a temp directory. ", e);
-        }
-        if (!tempDir.delete()) {
-            throw new MojoFailureException(
-                    "Could not create a temp directory: "
-                            + tempDir.getAbsolutePath());
-        }
-        return tempDir;
+    public static String buildConnectionErrorMessage(String url) {
+        return "Could not open a connection of "
+                + url
+                + "\n\nIf you want to use a proxy server,\n"
+                + "run \"mvn dbflute:download -Dhttp.proxyHost=<hostname> -Dhttp.proxyPort=<port>\".";
     }
 
-    public static void unzip(String url, File destDir)
+    /**
+     * Extract a local zip file with the specified number of threads.
+     * ZipFile can read entries at random, so entries are
+     * extracted by a fork-join pool after directories are created.
+     * @param zipFile the zip file to extract. (NotNull)
+     * @param destDir the directory to extract to. (NotNull)
+     * @param threads the number of threads for extraction. (1 or more)
+     * @return the bytes of the extracted files.
+     */
+    public static long unzip(File zipFile, File destDir, int threads)
             throws MojoFailureException, MojoExecutionException {
-        try {
-            unzip(new URL(url).openStream(), destDir, true);
+        long startTime = System.currentTimeMillis();
+        long entryCount = 0;
+        long byteCount;
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            List<ZipEntry> fileEntryList = new ArrayList<ZipEntry>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry zipEntry = entries.nextElement();
+                File targetFile = new File(destDir + File.separator
+                        + zipEntry.getName());
+                if (zipEntry.isDirectory()) {
+                    LogUtil.getLog().info("Extracting " + zipEntry.getName());
+                    makeDir(targetFile);
+                } else {
+                    // create parents here not to race in worker threads
+                    makeDir(targetFile.getParentFile());
+                    fileEntryList.add(zipEntry);
+                }
+                entryCount++;
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+            try {
+                byteCount = pool.invoke(new ExtractTask(LogUtil.getLog(), zip,
+                        destDir, fileEntryList, 0, fileEntryList.size()));
+            } catch (PluginSystemException e) {
+                throw new MojoExecutionException(e.getMessage(), e.getCause());
+            } finally {
+                pool.shutdown();
+            }
         } catch (IOException e) {
-            throw new MojoExecutionException(
-                    "Could not open a connection of "
-                            + url
-                            + "\n\nIf you want to use a proxy server,\n"
-                            + "run \"mvn dbflute:download -Dhttp.proxyHost=<hostname> -Dhttp.proxyPort=<port>\".",
-                    e);
+            throw new MojoExecutionException("Could not extract "
+                    + zipFile.getAbsolutePath(), e);
         }
-    }
 
-    public static void unzip(InputStream inputStream, File destDir)
-            throws MojoFailureException, MojoExecutionException {
-        unzip(inputStream, destDir, true);
+        logThroughput(entryCount, byteCount, System.currentTimeMillis()
+                - startTime);
+        return byteCount;
     }
 
-    public static void unzip(InputStream inputStream, File destDir,
-            boolean overwrite) throws MojoFailureException,
-            MojoExecutionException {
+    private static class ExtractTask extends RecursiveTask<Long> {
 
-        ZipEntry zipEntry = null;
+        private static final long serialVersionUID = 1L;
 
-        try (ZipInputStream in = new ZipInputStream(new BufferedInputStream(
-                inputStream))) {
-            while ((zipEntry = in.getNextEntry()) != null) {
-                String entryName = zipEntry.getName();
-                if (zipEntry.isDirectory()) {
-                    LogUtil.getLog().info("Extracting " + entryName);
+        /** the number of entries that one task extracts without splitting */
+        private static final int THRESHOLD = 4;
 
-                    File targetFile = new File(destDir + File.separator
-                            + entryName);
-                    makeDir(targetFile);
-                } else {
-                    LogUtil.getLog().info("Extracting " + entryName);
+        private final Log log;
 
-                    File targetFile = new File(destDir + File.separator
-                            + entryName);
-                    makeDir(targetFile.getParentFile());
+        private final ZipFile zip;
 
-                    if (overwrite || !targetFile.exists()) {
-                        try (BufferedOutputStream out = new BufferedOutputStream(
-                                new FileOutputStream(targetFile))) {
+        private final File destDir;
 
-                            int data = 0;
-                            while ((data = in.read()) != -1) {
-                                out.write(data);
-                            }
+        private final List<ZipEntry> entryList;
 
-                            out.flush();
-                        } catch (IOException e) {
-                            throw new MojoExecutionException(
-                                    "Could not extract " + entryName, e);
-                        }
-                    }
+        private final int from;
+
+        private final int to;
+
+        public ExtractTask(Log log, ZipFile zip, File destDir,
+                List<ZipEntry> entryList, int from, int to) {
+            this.log = log;
+            this.zip = zip;
+            this.destDir = destDir;
+            this.entryList = entryList;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ExtractTask left = new ExtractTask(log, zip, destDir,
+                        entryList, from, middle);
+                left.fork();
+                long rightCount = new ExtractTask(log, zip, destDir,
+                        entryList, middle, to).compute();
+                return left.join() + rightCount;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUF_SIZE);
+            long total = 0;
+            for (int i = from; i < to; i++) {
+                ZipEntry zipEntry = entryList.get(i);
+                String entryName = zipEntry.getName();
+                log.info("Extracting " + entryName);
+                File targetFile = new File(destDir + File.separator
+                        + entryName);
+                CRC32 crc = new CRC32();
+                try (InputStream in = new CheckedInputStream(
+                        zip.getInputStream(zipEntry), crc);
+                        FileChannel out = FileChannel.open(
+                                targetFile.toPath(),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE)) {
+                    long size = copy(in, out, buffer);
+                    checkEntry(zipEntry, size, crc.getValue());
+                    total += size;
+                } catch (IOException e) {
+                    throw new PluginSystemException("Could not extract "
+                            + entryName, e);
                 }
             }
-        } catch (IOException e) {
-            throw new MojoExecutionException(
-                    "Could not extract downloaded file.", e);
+            return total;
+        }
+    }
+
+    /**
+     * Check the read content of the entry by its size and CRC in the archive.
+     * ZipFile does not check CRC of a stored entry, and the central directory
+     * alone cannot tell that the content is broken.
+     * @param entry the entry in the archive. (NotNull)
+     * @param size the bytes read from the entry.
+     * @param crc the CRC-32 of the read bytes.
+     * @throws ZipException When they are different from the entry.
+     */
+    public static void checkEntry(ZipEntry entry, long size, long crc)
+            throws ZipException {
+        if (entry.getSize() >= 0 && entry.getSize() != size) {
+            throw new ZipException("Invalid size of " + entry.getName()
+                    + ": " + size + " / " + entry.getSize() + " bytes");
+        }
+        if (entry.getCrc() >= 0 && entry.getCrc() != crc) {
+            throw new ZipException("Invalid CRC of " + entry.getName());
+        }
+    }
+
+    private static long copy(InputStream in, WritableByteChannel out,
+            ByteBuffer buffer) throws IOException {
+        byte[] bytes = buffer.array();
+        long total = 0;
+        int n;
+        while ((n = in.read(bytes)) != -1) {
+            buffer.clear();
+            buffer.limit(n);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private static void logThroughput(long entryCount, long byteCount,
+            long elapsedMillis) {
+        // avoid division by zero for a tiny archive
+        double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+        LogUtil.getLog().info(
+                String.format("Extracted %d entries (%d bytes) in %d ms:"
+                        + " %.0f bytes/s, %.1f entries/s", entryCount,
+                        byteCount, elapsedMillis, byteCount / seconds,
+                        entryCount / seconds));
+    }
+
+    /**
+     * Move the file or the directory at once if the file system supports it.
+     * @param src the file or directory to move. (NotNull)
+     * @param dest the destination. (NotNull)
+     * @param options options used only if an atomic move is not supported.
+     * @throws IOException When it fails to move.
+     */
+    public static void moveAtomically(File src, File dest,
+            CopyOption... options) throws IOException {
+        try {
+            Files.move(src.toPath(), dest.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(src.toPath(), dest.toPath(), options);
+        }
+    }
+
+    /**
+     * Copy the permissions of the file, e.g. the exec bit of a shell script,
+     * because a file replaced by another keeps the permissions of the other.
+     * @param src the original file. (NotNull)
+     * @param dest the file to take over the permissions. (NotNull)
+     * @throws IOException When it fails to read or write the permissions.
+     */
+    private static void copyPermissions(File src, File dest)
+            throws IOException {
+        Path srcPath = src.toPath();
+        Path destPath = dest.toPath();
+        if (Files.getFileAttributeView(srcPath,
+                PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(destPath,
+                    Files.getPosixFilePermissions(srcPath));
+        } else if (Files.getFileAttributeView(srcPath,
+                DosFileAttributeView.class) != null) {
+            DosFileAttributes attrs = Files.readAttributes(srcPath,
+                    DosFileAttributes.class);
+            DosFileAttributeView view = Files.getFileAttributeView(destPath,
+                    DosFileAttributeView.class);
+            view.setReadOnly(attrs.isReadOnly());
+            view.setHidden(attrs.isHidden());
+            view.setArchive(attrs.isArchive());
+            view.setSystem(attrs.isSystem());
         }
     }
 
@@ -144,49 +311,144 @@ public class ResourceUtil {
 
     public static void replaceContent(File file, Map<String, String> params,
             boolean replacedPause) throws MojoExecutionException {
+        replaceContent(file, new ContentReplacer(params), replacedPause);
+    }
+
+    /**
+     * Replace contents of the file in one pass. <br>
+     * The file is streamed in windows not to load it on memory,
+     * and replaced atomically by a temp file with the permissions of the file.
+     * Only a bat file to replace pause is loaded, because it is checked as a whole.
+     * 
+     * @param file the file to be replaced. (NotNull)
+     * @param replacer the compiled parameters, can be shared by threads. (NotNull)
+     * @param replacedPause whether the pause of a bat file is made optional.
+     * @throws MojoExecutionException When it fails to read or write the file.
+     */
+    public static void replaceContent(File file, ContentReplacer replacer,
+            boolean replacedPause) throws MojoExecutionException {
         if (!file.exists()) {
             LogUtil.getLog().info(
                     file.getAbsolutePath()
                             + " does not exists. Skip a content replacement.");
+            return;
         }
 
         LogUtil.getLog()
                 .info("Replacing contents in " + file.getAbsolutePath());
-        String content = readText(file, "UTF-8");
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            content = content.replaceAll(entry.getKey(), entry.getValue());
+        File tempFile = new File(file.getParentFile(), "." + file.getName()
+                + "-" + System.nanoTime());
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tempFile), "UTF-8"), BUF_SIZE)) {
+                if (replacedPause) {
+                    writer.write(replaceText(readText(file, "UTF-8"),
+                            file.getName(), replacer, true));
+                } else {
+                    try (Reader reader = new InputStreamReader(
+                            new FileInputStream(file), "UTF-8")) {
+                        replacer.replace(reader, writer);
+                    }
+                }
+            }
+            copyPermissions(file, tempFile);
+            moveAtomically(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Output error in "
+                    + file.getAbsolutePath(), e);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                LogUtil.getLog().warn(
+                        "Could not delete " + tempFile.getAbsolutePath());
+            }
         }
+    }
+
+    /**
+     * @param content the content of the file. (NotNull)
+     * @param fileName the name of the file. e.g. _project.bat (NotNull)
+     * @param replacer the compiled parameters. (NotNull)
+     * @param replacedPause whether the pause of a bat file is made optional.
+     * @return the replaced content. (NotNull)
+     */
+    public static String replaceText(String content, String fileName,
+            ContentReplacer replacer, boolean replacedPause) {
+        content = replacer.replace(content);
         if (replacedPause) {
             int pos = content.indexOf("pause_at_end");
             if (pos == -1) {
                 content = content.replaceAll("pause\r\n",
                         "if \"%pause_at_end%\"==\"y\" (\r\n  pause\r\n)\r\n");
-                if ("_project.bat".equals(file.getName())) {
+                if ("_project.bat".equals(fileName)) {
                     content = content
                             + "\r\n\r\nif \"%pause_at_end%\"==\"\" set pause_at_end=y\r\n";
                 }
             }
         }
-        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file),
-                "UTF-8")) {
-            writer.write(content);
-            writer.flush();
-        } catch (IOException e) {
-            throw new MojoExecutionException("Output error in "
-                    + file.getAbsolutePath(), e);
-        }
+        return content;
     }
 
+    /**
+     * Read the text of the file at once. <br>
+     * The bytes are read into a buffer presized by the file size and decoded at once.
+     * The file is not mapped on memory, which keeps it locked on Windows until GC.
+     * 
+     * @param file the file to read. (NotNull)
+     * @param encoding the encoding of the file. (NotNull)
+     * @return the text of the file. (NotNull)
+     * @throws MojoExecutionException When it fails to read the file.
+     */
     public static String readText(File file, String encoding)
             throws MojoExecutionException {
-        try {
-            return readText(new FileInputStream(file), encoding);
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) { // too large for a buffer
+                return readText(new FileInputStream(file), encoding);
+            }
+            ByteBuffer in = ByteBuffer.allocate((int) size);
+            while (in.hasRemaining() && channel.read(in) >= 0) {
+                // read fully
+            }
+            in.flip();
+            return decode(in, encoding);
         } catch (IOException e) {
             throw new MojoExecutionException("Input error in "
                     + file.getAbsolutePath(), e);
         }
     }
 
+    private static String decode(ByteBuffer in, String encoding)
+            throws CharacterCodingException {
+        // malformed bytes are replaced as InputStreamReader does
+        CharsetDecoder decoder = Charset.forName(encoding).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // presized by the maximum, that is the byte size for UTF-8
+        CharBuffer out = CharBuffer.allocate((int) Math.min(
+                Integer.MAX_VALUE - 8,
+                (long) Math.ceil(in.remaining() * decoder.maxCharsPerByte())));
+        while (true) {
+            CoderResult result = decoder.decode(in, out, true);
+            if (result.isUnderflow()) {
+                result = decoder.flush(out);
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+            if (result.isOverflow()) { // not reached for usual charsets
+                CharBuffer larger = CharBuffer
+                        .allocate(out.capacity() * 2 + 16);
+                out.flip();
+                larger.put(out);
+                out = larger;
+            } else {
+                result.throwException();
+            }
+        }
+        return new String(out.array(), 0, out.position());
+    }
+
     public static String readText(String url, String encoding)
             throws MojoExecutionException {
         try {
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.apache.maven.project.MavenProject;
+import org.dbflute.maven.plugin.command.CommandExecutor;
+
+public class DocCommandPluginTest extends AbstractMojoTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        assertTrue(tempDir.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(tempDir);
+        super.tearDown();
+    }
+
+    public void test_execute_docCache() throws Exception {
+        File clientDir = new File(tempDir, "dbflute_maindb");
+        File dfpropFile = new File(clientDir, "dfprop/basicInfoMap.dfprop");
+        FileUtils.writeStringToFile(dfpropFile, "map:{ ; database = h2 }",
+                "UTF-8");
+        File indexFile = new File(clientDir, "output/doc/index.html");
+        AtomicInteger count = new AtomicInteger();
+        DocCommandPlugin plugin = newPlugin(clientDir, count);
+
+        plugin.execute(); // miss
+        assertEquals(1, count.get());
+        assertEquals("doc1", FileUtils.readFileToString(indexFile, "UTF-8"));
+
+        FileUtils.writeStringToFile(indexFile, "broken", "UTF-8");
+        plugin.execute(); // hit
+        assertEquals(1, count.get());
+        assertEquals("doc1", FileUtils.readFileToString(indexFile, "UTF-8"));
+
+        FileUtils.deleteDirectory(indexFile.getParentFile());
+        plugin.execute(); // hit without output/doc
+        assertEquals(1, count.get());
+        assertEquals("doc1", FileUtils.readFileToString(indexFile, "UTF-8"));
+
+        FileUtils.writeStringToFile(dfpropFile, "map:{ ; database = mysql }",
+                "UTF-8");
+        plugin.execute(); // miss
+        assertEquals(2, count.get());
+        assertEquals("doc2", FileUtils.readFileToString(indexFile, "UTF-8"));
+    }
+
+    public void test_execute_noDocCache() throws Exception {
+        File clientDir = new File(tempDir, "dbflute_maindb");
+        assertTrue(clientDir.mkdirs());
+        AtomicInteger count = new AtomicInteger();
+        DocCommandPlugin plugin = newPlugin(clientDir, count);
+        plugin.docCache = false;
+
+        plugin.execute();
+        plugin.execute();
+        assertEquals(2, count.get());
+        assertFalse(new File(tempDir, "cache").exists());
+    }
+
+    private DocCommandPlugin newPlugin(final File clientDir,
+            final AtomicInteger count) {
+        DocCommandPlugin plugin = new DocCommandPlugin() {
+            @Override
+            protected CommandExecutor createCommandExecutor() {
+                return new CommandExecutor(this) {
+                    @Override
+                    public void execute(String cmd)
+                            throws MojoExecutionException {
+                        File indexFile = new File(clientDir,
+                                "output/doc/index.html");
+                        try {
+                            FileUtils.writeStringToFile(indexFile, "doc"
+                                    + count.incrementAndGet(), "UTF-8");
+                        } catch (IOException e) {
+                            throw new MojoExecutionException(e.getMessage(), e);
+                        }
+                    }
+                };
+            }
+        };
+        plugin.project = new MavenProject();
+        plugin.project.getBuild().setDirectory(
+                new File(tempDir, "target").getAbsolutePath());
+        plugin.dbfluteClientDir = clientDir;
+        plugin.docCache = true;
+        plugin.cacheDir = new File(tempDir, "cache");
+        plugin.docCacheMaxEntries = 20;
+        return plugin;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.apache.maven.project.MavenProject;
+import org.dbflute.maven.plugin.command.CommandExecutor;
+
+public class GenerateCommandPluginTest extends AbstractMojoTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        assertTrue(tempDir.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(tempDir);
+        super.tearDown();
+    }
+
+    public void test_execute_incremental() throws Exception {
+        File clientDir = new File(tempDir, "dbflute_maindb");
+        File dfpropFile = new File(clientDir, "dfprop/basicInfoMap.dfprop");
+        FileUtils.writeStringToFile(dfpropFile, "map:{ ; database = h2 }",
+                "UTF-8");
+        AtomicInteger count = new AtomicInteger();
+        GenerateCommandPlugin plugin = newPlugin(clientDir, count);
+
+        plugin.execute();
+        assertEquals(1, count.get());
+
+        plugin.execute(); // skipped by the same inputs
+        assertEquals(1, count.get());
+
+        FileUtils.writeStringToFile(dfpropFile, "map:{ ; database = mysql }",
+                "UTF-8");
+        plugin.execute();
+        assertEquals(2, count.get());
+
+        plugin.execute();
+        assertEquals(2, count.get());
+    }
+
+    public void test_execute_notIncremental() throws Exception {
+        File clientDir = new File(tempDir, "dbflute_maindb");
+        assertTrue(clientDir.mkdirs());
+        AtomicInteger count = new AtomicInteger();
+        GenerateCommandPlugin plugin = newPlugin(clientDir, count);
+        plugin.incremental = false;
+
+        plugin.execute();
+        plugin.execute();
+        assertEquals(2, count.get());
+    }
+
+    private GenerateCommandPlugin newPlugin(File clientDir,
+            final AtomicInteger count) {
+        GenerateCommandPlugin plugin = new GenerateCommandPlugin() {
+            @Override
+            protected CommandExecutor createCommandExecutor() {
+                return new CommandExecutor(this) {
+                    @Override
+                    public void execute(String cmd) {
+                        count.incrementAndGet();
+                    }
+                };
+            }
+        };
+        plugin.project = new MavenProject();
+        plugin.project.getBuild().setDirectory(
+                new File(tempDir, "target").getAbsolutePath());
+        plugin.dbfluteClientDir = clientDir;
+        plugin.incremental = true;
+        return plugin;
+    }
+}
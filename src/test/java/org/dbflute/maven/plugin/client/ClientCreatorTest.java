@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.client;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.dbflute.maven.plugin.CreateClientPlugin;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+
+public class ClientCreatorTest extends AbstractMojoTestCase {
+
+    private File basedir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        basedir = File.createTempFile("mdp-", "");
+        assertTrue(basedir.delete());
+        assertTrue(basedir.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(basedir);
+        super.tearDown();
+    }
+
+    public void test_execute_template() throws Exception {
+        File dbfluteDir = new File(basedir, "mydbflute/dbflute-1.1.0");
+        createTemplate(dbfluteDir);
+
+        new ClientCreator(new StubPlugin(basedir, dbfluteDir, "com.example"))
+                .execute();
+
+        File clientDir = new File(basedir, "dbflute_maindb");
+        assertEquals(
+                "export DBFLUTE_HOME=../mydbflute/dbflute-1.1.0\n",
+                ResourceUtil.readText(new File(clientDir, "_project.sh"),
+                        "UTF-8"));
+        assertEquals("set DBFLUTE_HOME=..\\mydbflute\\dbflute-1.1.0\r\n"
+                + "\r\n\r\nif \"%pause_at_end%\"==\"\" set pause_at_end=y\r\n",
+                ResourceUtil.readText(new File(clientDir, "_project.bat"),
+                        "UTF-8"));
+        assertEquals("if \"%pause_at_end%\"==\"y\" (\r\n  pause\r\n)\r\n",
+                ResourceUtil.readText(new File(clientDir, "manage.bat"),
+                        "UTF-8"));
+        assertEquals("map:{; database = h2; packageBase = com.example}",
+                ResourceUtil.readText(new File(clientDir,
+                        "dfprop/basicInfoMap.dfprop"), "UTF-8"));
+        assertEquals("pause\r\n", ResourceUtil.readText(new File(clientDir,
+                "dfprop/sub.bat"), "UTF-8"));
+        assertEquals(2, basedir.list().length); // no temp directory left
+    }
+
+    public void test_execute_missingPackageBase() throws Exception {
+        File dbfluteDir = new File(basedir, "mydbflute/dbflute-1.1.0");
+        createTemplate(dbfluteDir);
+
+        try {
+            new ClientCreator(new StubPlugin(basedir, dbfluteDir, null))
+                    .execute();
+            fail();
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage().contains("packageBase"));
+        }
+        assertFalse(new File(basedir, "dbflute_maindb").exists());
+    }
+
+    private void createTemplate(File dbfluteDir) throws Exception {
+        File zipFile = new File(dbfluteDir,
+                "etc/client-template/dbflute_dfclient.zip");
+        assertTrue(zipFile.getParentFile().mkdirs());
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+                zipFile))) {
+            putEntry(out, "dbflute_dfclient/", null);
+            putEntry(out, "dbflute_dfclient/_project.sh",
+                    "export DBFLUTE_HOME=../mydbflute/dbflute-1.0.0\n");
+            putEntry(out, "dbflute_dfclient/_project.bat",
+                    "set DBFLUTE_HOME=..\\mydbflute\\dbflute-1.0.0\r\n");
+            putEntry(out, "dbflute_dfclient/manage.bat", "pause\r\n");
+            putEntry(out, "dbflute_dfclient/dfprop/", null);
+            putEntry(out, "dbflute_dfclient/dfprop/basicInfoMap.dfprop",
+                    "map:{; database = @database@; packageBase = @packageBase@}");
+            putEntry(out, "dbflute_dfclient/dfprop/sub.bat", "pause\r\n");
+        }
+    }
+
+    private void putEntry(ZipOutputStream out, String name, String content)
+            throws Exception {
+        out.putNextEntry(new ZipEntry(name));
+        if (content != null) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        out.closeEntry();
+    }
+
+    private static class StubPlugin extends CreateClientPlugin {
+
+        private final File dbfluteDir;
+
+        public StubPlugin(File basedir, File dbfluteDir, String packageBase) {
+            this.basedir = basedir;
+            this.dbfluteDir = dbfluteDir;
+            this.clientProject = "maindb";
+            this.packageBase = packageBase;
+            this.enablePause = "false";
+            this.database = "h2";
+        }
+
+        @Override
+        public File getDbfluteDir() {
+            return dbfluteDir;
+        }
+
+        @Override
+        public String getDbfluteName() {
+            return dbfluteDir.getName();
+        }
+    }
+}
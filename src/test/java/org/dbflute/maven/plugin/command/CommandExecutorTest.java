@@ -0,0 +1,225 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.dbflute.maven.plugin.CommandPlugin;
+
+public class CommandExecutorTest extends AbstractMojoTestCase {
+
+    private final Log log = new SystemStreamLog();
+
+    public void test_setupAppCds_training() throws Exception {
+        File clientDir = createClient();
+        Map<String, String> env = new HashMap<String, String>();
+
+        File trainingFile = newExecutor(17).setupAppCds(
+                env, clientDir, "generate", log, null);
+
+        assertNotNull(trainingFile);
+        assertTrue(env.get("_JAVA_OPTIONS").endsWith(
+                "-XX:ArchiveClassesAtExit=" + trainingFile.getAbsolutePath()));
+        assertEquals(new File(clientDir, "../mydbflute/dbflute-1.1.0")
+                .getCanonicalFile(), trainingFile.getParentFile());
+    }
+
+    public void test_setupAppCds_notTrainingTask() throws Exception {
+        File clientDir = createClient();
+        Map<String, String> env = new HashMap<String, String>();
+
+        assertNull(newExecutor(17).setupAppCds(env,
+                clientDir, "jdbc", log, null));
+        assertFalse(env.containsKey("_JAVA_OPTIONS"));
+    }
+
+    public void test_setupAppCds_archived() throws Exception {
+        File clientDir = createClient();
+        File archiveFile = new File(new File(clientDir,
+                "../mydbflute/dbflute-1.1.0").getCanonicalFile(),
+                CommandExecutor.APP_CDS_ARCHIVE_NAME);
+        Files.write(archiveFile.toPath(), new byte[1]);
+        Map<String, String> env = new HashMap<String, String>();
+
+        assertNull(newExecutor(17).setupAppCds(env,
+                clientDir, "jdbc", log, null));
+        assertTrue(env.get("_JAVA_OPTIONS").endsWith(
+                "-XX:SharedArchiveFile=" + archiveFile.getAbsolutePath()));
+    }
+
+    public void test_setupAppCds_oldJava() throws Exception {
+        File clientDir = createClient();
+        Map<String, String> env = new HashMap<String, String>();
+
+        assertNull(newExecutor(11).setupAppCds(env, clientDir, "generate",
+                log, null));
+        assertNull(newExecutor(-1).setupAppCds(env, clientDir, "generate",
+                log, null));
+        assertFalse(env.containsKey("_JAVA_OPTIONS"));
+    }
+
+    public void test_setupProfiling() throws Exception {
+        File profilingDir = new File(createClient(), "../profiling");
+        StubPlugin plugin = new StubPlugin();
+        plugin.setProfilingDir(profilingDir);
+        Map<String, String> env = new HashMap<String, String>();
+
+        assertNull(newExecutor(plugin, 8).setupProfiling(env,
+                "dbflute_maindb-generate", log, "[dbflute_maindb] "));
+        assertFalse(env.containsKey("_JAVA_OPTIONS"));
+
+        File jfrFile = newExecutor(plugin, 17).setupProfiling(env,
+                "dbflute_maindb-generate", log, null);
+        assertEquals(profilingDir, jfrFile.getParentFile());
+        assertEquals(
+                "-XX:StartFlightRecording=settings=profile,dumponexit=true,filename="
+                        + jfrFile.getAbsolutePath(), env.get("_JAVA_OPTIONS"));
+    }
+
+    public void test_parseJavaVersion() throws Exception {
+        assertEquals(8, CommandExecutor.parseJavaVersion(
+                "openjdk version \"1.8.0_292\"\nOpenJDK Runtime Environment"));
+        assertEquals(17, CommandExecutor.parseJavaVersion(
+                "Picked up _JAVA_OPTIONS: -Xmx1g\nopenjdk version \"17.0.2\""));
+        assertEquals(21, CommandExecutor
+                .parseJavaVersion("openjdk version \"21\" 2023-09-19"));
+        assertEquals(-1, CommandExecutor.parseJavaVersion("command not found"));
+    }
+
+    public void test_publishAppCds() throws Exception {
+        File engineDir = new File(createClient(), "../mydbflute/dbflute-1.1.0")
+                .getCanonicalFile();
+        File archiveFile = new File(engineDir,
+                CommandExecutor.APP_CDS_ARCHIVE_NAME);
+        CommandExecutor executor = newExecutor(17);
+
+        File failedFile = new File(engineDir, ".failed.jsa");
+        Files.write(failedFile.toPath(), new byte[1]);
+        executor.publishAppCds(failedFile, false, log, null);
+        assertFalse(archiveFile.exists());
+        assertFalse(failedFile.exists());
+
+        File trainingFile = new File(engineDir, ".training.jsa");
+        Files.write(trainingFile.toPath(), new byte[1]);
+        executor.publishAppCds(trainingFile, true, log, null);
+        assertTrue(archiveFile.isFile());
+        assertFalse(trainingFile.exists());
+    }
+
+    public void test_executeInParallel_failure() throws Exception {
+        File basedir = createClient().getParentFile();
+        assertTrue(new File(basedir, "dbflute_subdb").mkdirs());
+        assertTrue(new File(basedir, "dbflute_thirddb").mkdirs());
+        StubPlugin plugin = new StubPlugin();
+        plugin.setBasedir(basedir);
+        plugin.setClientProjects("maindb, subdb, thirddb");
+        plugin.setClientThreads(2);
+        final Set<String> executedSet = Collections
+                .synchronizedSet(new HashSet<String>());
+        CommandExecutor executor = new CommandExecutor(plugin) {
+            @Override
+            protected void runProcess(String cmd, File dbfluteClientDir,
+                    Log log, String prefix) throws MojoFailureException {
+                if (dbfluteClientDir.getName().equals("dbflute_subdb")) {
+                    throw new MojoFailureException("Failed to execute "
+                            + cmd);
+                }
+                executedSet.add(dbfluteClientDir.getName());
+            }
+        };
+
+        try {
+            executor.execute("manage");
+            fail();
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(
+                    "dbflute_subdb: Failed to execute manage"));
+            assertFalse(e.getMessage(), e.getMessage().contains(
+                    "dbflute_maindb"));
+            assertFalse(e.getMessage(), e.getMessage().contains(
+                    "dbflute_thirddb"));
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("dbflute_maindb",
+                "dbflute_thirddb")), executedSet);
+    }
+
+    private CommandExecutor newExecutor(int javaVersion) {
+        return newExecutor(new StubPlugin(), javaVersion);
+    }
+
+    private CommandExecutor newExecutor(CommandPlugin plugin,
+            final int javaVersion) {
+        return new CommandExecutor(plugin) {
+            @Override
+            protected int getEngineJavaVersion(Map<String, String> env) {
+                return javaVersion;
+            }
+        };
+    }
+
+    private File createClient() throws Exception {
+        File basedir = File.createTempFile("mdp-", "");
+        assertTrue(basedir.delete());
+        assertTrue(new File(basedir, "mydbflute/dbflute-1.1.0").mkdirs());
+        File clientDir = new File(basedir, "dbflute_maindb");
+        assertTrue(clientDir.mkdirs());
+        // the same line as the client template
+        String line = "export DBFLUTE_HOME=../mydbflute/dbflute-1.1.0\n";
+        Files.write(new File(clientDir, "_project.sh").toPath(),
+                line.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(clientDir, "_project.bat").toPath(),
+                line.replace("export", "set").getBytes(StandardCharsets.UTF_8));
+        return clientDir;
+    }
+
+    private static class StubPlugin extends CommandPlugin {
+
+        public StubPlugin() {
+            this.appCds = true;
+        }
+
+        public void setProfilingDir(File profilingDir) {
+            this.profilingDir = profilingDir;
+        }
+
+        public void setBasedir(File basedir) {
+            this.basedir = basedir;
+        }
+
+        public void setClientProjects(String clientProjects) {
+            this.clientProjects = clientProjects;
+        }
+
+        public void setClientThreads(int clientThreads) {
+            this.clientThreads = clientThreads;
+        }
+
+        public void execute() {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class ExecutionRegistryTest extends AbstractMojoTestCase {
+
+    public void test_execute_once() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final Callable<Void> command = new Callable<Void>() {
+            public Void call() throws Exception {
+                count.incrementAndGet();
+                Thread.sleep(100);
+                return null;
+            }
+        };
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futureList = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 4; i++) {
+                futureList.add(executorService.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        return ExecutionRegistry.execute("once", "key",
+                                command);
+                    }
+                }));
+            }
+            int executed = 0;
+            for (Future<Boolean> future : futureList) {
+                if (future.get()) {
+                    executed++;
+                }
+            }
+            assertEquals(1, executed);
+            assertEquals(1, count.get());
+        } finally {
+            executorService.shutdown();
+        }
+
+        assertFalse(ExecutionRegistry.execute("once", "key", command));
+        assertTrue(ExecutionRegistry.execute("once", "other", command));
+        assertTrue(ExecutionRegistry.execute("next", "key", command));
+        assertEquals(3, count.get());
+    }
+
+    public void test_execute_failure() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        Callable<Void> command = new Callable<Void>() {
+            public Void call() throws Exception {
+                if (count.incrementAndGet() == 1) {
+                    throw new MojoFailureException("failed");
+                }
+                return null;
+            }
+        };
+        try {
+            ExecutionRegistry.execute("failure", "key", command);
+            fail();
+        } catch (MojoFailureException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertTrue(ExecutionRegistry.execute("failure", "key", command));
+        assertEquals(2, count.get());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class InputFingerprintTest extends AbstractMojoTestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        dir = File.createTempFile("mdp-", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdirs());
+        Files.write(new File(dir, "basicInfoMap.dfprop").toPath(), "map:{; database = mysql}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(dir);
+        super.tearDown();
+    }
+
+    public void test_toHex_sameInputs() throws Exception {
+        String first = new InputFingerprint().addValue("engine", "dbflute-1.1.0").addFile("dfprop", dir).toHex();
+        String second = new InputFingerprint().addValue("engine", "dbflute-1.1.0").addFile("dfprop", dir).toHex();
+        assertEquals(first, second);
+    }
+
+    public void test_toHex_changedFile() throws Exception {
+        String first = new InputFingerprint().addFile("dfprop", dir).toHex();
+        Files.write(new File(dir, "basicInfoMap.dfprop").toPath(), "map:{; database = h2}".getBytes(StandardCharsets.UTF_8));
+        String second = new InputFingerprint().addFile("dfprop", dir).toHex();
+        assertFalse(first.equals(second));
+    }
+
+    public void test_toHex_changedValue() throws Exception {
+        String first = new InputFingerprint().addValue("engine", "dbflute-1.1.0").toHex();
+        String second = new InputFingerprint().addValue("engine", "dbflute-1.1.1").toHex();
+        assertFalse(first.equals(second));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class JfrSummaryTest extends AbstractMojoTestCase {
+
+    public void test_read() throws Exception {
+        File jfrFile = new File(getBasedir(), "target/jfr-test/summary.jfr");
+        jfrFile.getParentFile().mkdirs();
+        List<String> garbage = new ArrayList<String>();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(10));
+            recording.enable("jdk.GarbageCollection");
+            recording.start();
+            long end = System.currentTimeMillis() + 500;
+            while (System.currentTimeMillis() < end) {
+                garbage.add(Long.toString(System.nanoTime()));
+                if (garbage.size() > 10000) {
+                    garbage.clear();
+                }
+            }
+            System.gc();
+            recording.stop();
+            recording.dump(jfrFile.toPath());
+        }
+
+        List<String> lines = JfrSummary.read(jfrFile).toLines(3);
+        assertTrue(lines.get(0), lines.get(0).startsWith("Hot methods ("));
+        assertTrue(lines.contains("Allocations:"));
+        String gcLine = lines.get(lines.size() - 1);
+        assertTrue(gcLine, gcLine.startsWith("GC: ") && !gcLine.startsWith("GC: 0 "));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class JvmProfileTest extends AbstractMojoTestCase {
+
+    public void test_of() throws Exception {
+        assertEquals(JvmProfile.FAST_STARTUP, JvmProfile.of("fast-startup"));
+        assertEquals(JvmProfile.LARGE_SCHEMA, JvmProfile.of(" Large-Schema "));
+        assertEquals(JvmProfile.LOW_MEMORY, JvmProfile.of("low-memory"));
+        assertNull(JvmProfile.of("huge"));
+    }
+
+    public void test_getOptions_heap() throws Exception {
+        // the heap is explicit to win over -Xmx512m of the client scripts
+        assertTrue(JvmProfile.LARGE_SCHEMA.getOptions(1).matches("-Xmx\\d+m .*"));
+        assertTrue(JvmProfile.LOW_MEMORY.getOptions(1).startsWith("-Xmx512m "));
+    }
+
+    public void test_getOptions_engineCount() throws Exception {
+        long single = extractHeapMega(JvmProfile.LARGE_SCHEMA.getOptions(1));
+        long shared = extractHeapMega(JvmProfile.LARGE_SCHEMA.getOptions(4));
+        assertTrue(shared <= single);
+        assertTrue(shared >= 512);
+        assertEquals(512, extractHeapMega(JvmProfile.LARGE_SCHEMA.getOptions(100000)));
+    }
+
+    private static long extractHeapMega(String options) {
+        return Long.parseLong(options.substring("-Xmx".length(), options.indexOf("m ")));
+    }
+}
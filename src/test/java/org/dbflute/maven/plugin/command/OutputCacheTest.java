@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+
+public class OutputCacheTest extends AbstractMojoTestCase {
+
+    private File tempDir;
+
+    private File cacheDir;
+
+    private File outputDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        cacheDir = new File(tempDir, "cache");
+        assertTrue(cacheDir.mkdirs());
+        outputDir = new File(tempDir, "doc");
+        assertTrue(outputDir.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(tempDir);
+        super.tearDown();
+    }
+
+    public void test_store_and_restore() throws Exception {
+        OutputCache cache = new OutputCache(cacheDir, 3);
+        Files.write(new File(outputDir, "schema.html").toPath(), "<html/>".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(cache.restore("key", outputDir));
+        cache.store("key", outputDir);
+        Files.write(new File(outputDir, "schema.html").toPath(), "broken".getBytes(StandardCharsets.UTF_8));
+        assertTrue(cache.restore("key", outputDir));
+
+        assertEquals("<html/>", ResourceUtil.readText(new File(outputDir, "schema.html"), "UTF-8"));
+        assertEquals(0, outputDir.getParentFile().list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith("." + outputDir.getName());
+            }
+        }).length); // no temp directory left
+    }
+
+    public void test_alias() throws Exception {
+        OutputCache cache = new OutputCache(cacheDir, 3);
+        Files.write(new File(outputDir, "schema.html").toPath(), "<html/>".getBytes(StandardCharsets.UTF_8));
+        cache.store("before", outputDir);
+
+        cache.alias("after", "before");
+        FileUtils.deleteDirectory(outputDir);
+
+        assertTrue(cache.restore("after", outputDir));
+        assertEquals("<html/>", ResourceUtil.readText(new File(outputDir, "schema.html"), "UTF-8"));
+    }
+
+    public void test_evict() throws Exception {
+        OutputCache cache = new OutputCache(cacheDir, 2);
+        Files.write(new File(outputDir, "schema.html").toPath(), "<html/>".getBytes(StandardCharsets.UTF_8));
+        cache.store("first", outputDir);
+        cache.alias("firstAlias", "first");
+        cache.store("second", outputDir);
+        new File(cacheDir, "first").setLastModified(System.currentTimeMillis() - 60000L);
+        new File(cacheDir, "second").setLastModified(System.currentTimeMillis() - 30000L);
+
+        cache.store("third", outputDir);
+
+        assertFalse(cache.restore("first", outputDir)); // used least recently
+        assertFalse(cache.restore("firstAlias", outputDir));
+        assertFalse(new File(cacheDir, "firstAlias.alias").exists());
+        assertTrue(cache.restore("second", outputDir));
+        assertTrue(cache.restore("third", outputDir));
+    }
+
+    public void test_countUp() throws Exception {
+        OutputCache cache = new OutputCache(cacheDir, 3);
+        cache.countUp(false);
+        cache.countUp(true);
+        Properties stats = cache.countUp(true);
+        assertEquals("2", stats.getProperty("hits"));
+        assertEquals("1", stats.getProperty("misses"));
+    }
+
+    public void test_countUp_concurrent() throws Exception {
+        final OutputCache cache = new OutputCache(cacheDir, 3);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 10; j++) {
+                            cache.countUp(true);
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("41", cache.countUp(true).getProperty("hits"));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.command;
+
+import java.io.ByteArrayInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class ProcessOutputPumpTest extends AbstractMojoTestCase {
+
+    public void test_pump_lines() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        ProcessOutputPump pump = new ProcessOutputPump(
+                new ByteArrayInputStream("foo\nbar\r\n\nbaz".getBytes()),
+                new SystemStreamLog() {
+                    @Override
+                    public void info(CharSequence content) {
+                        lines.add(content.toString());
+                    }
+                });
+        pump.start();
+        pump.join();
+        assertEquals(Arrays.asList("foo", "bar", "", "baz"), lines);
+    }
+
+    public void test_pump_manyLines() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            sb.append("line").append(i).append('\n');
+        }
+        final List<String> lines = new ArrayList<String>();
+        ProcessOutputPump pump = new ProcessOutputPump(
+                new ByteArrayInputStream(sb.toString().getBytes()),
+                new SystemStreamLog() {
+                    @Override
+                    public void info(CharSequence content) {
+                        lines.add(content.toString());
+                    }
+                });
+        pump.start();
+        pump.join();
+        assertEquals(100000, lines.size());
+        assertEquals("line99999", lines.get(99999));
+    }
+
+    public void test_pump_prefix() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        ProcessOutputPump pump = new ProcessOutputPump(
+                new ByteArrayInputStream("foo\nbar".getBytes()),
+                new SystemStreamLog() {
+                    @Override
+                    public void info(CharSequence content) {
+                        lines.add(content.toString());
+                    }
+                }, "[dbflute_maindb] ");
+        pump.start();
+        pump.join();
+        assertEquals(
+                Arrays.asList("[dbflute_maindb] foo", "[dbflute_maindb] bar"),
+                lines);
+    }
+
+    public void test_pump_halfLine() throws Exception {
+        final List<String> lines = Collections
+                .synchronizedList(new ArrayList<String>());
+        PipedOutputStream out = new PipedOutputStream();
+        ProcessOutputPump pump = new ProcessOutputPump(new PipedInputStream(
+                out), new SystemStreamLog() {
+            @Override
+            public void info(CharSequence content) {
+                lines.add(content.toString());
+            }
+        });
+        pump.start();
+        out.write("foo".getBytes());
+        out.flush();
+        Thread.sleep(20); // the rest of the line comes soon
+        out.write("bar\nContinue? (y/n): ".getBytes());
+        out.flush();
+        Thread.sleep(1000); // the prompt waits for input
+        assertEquals(Arrays.asList("foobar", "Continue? (y/n): "), lines);
+        out.close();
+        pump.join();
+        assertEquals(2, lines.size());
+    }
+
+    public void test_pump_linesBeforeHalfLine() throws Exception {
+        final List<String> lines = Collections
+                .synchronizedList(new ArrayList<String>());
+        PipedOutputStream out = new PipedOutputStream();
+        ProcessOutputPump pump = new ProcessOutputPump(new PipedInputStream(
+                out), new SystemStreamLog() {
+            @Override
+            public void info(CharSequence content) {
+                lines.add(content.toString());
+            }
+        });
+        pump.start();
+        out.write("foo\nbar".getBytes());
+        out.flush();
+        Thread.sleep(100); // within the wait for the rest of bar
+        assertEquals(Arrays.asList("foo"), lines);
+        Thread.sleep(1000);
+        assertEquals(Arrays.asList("foo", "bar"), lines);
+        out.close();
+        pump.join();
+        assertEquals(2, lines.size());
+    }
+}
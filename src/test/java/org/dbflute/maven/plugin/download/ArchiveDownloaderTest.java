@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ArchiveDownloaderTest extends AbstractMojoTestCase {
+
+    private HttpServer server;
+
+    private File tempDir;
+
+    private byte[] archive;
+
+    /** the Range header of each request (NullAllowed: element) */
+    private final List<String> rangeList = new ArrayList<String>();
+
+    /** the number of bytes sent before dropping the connection in the first request (-1: not dropped) */
+    private int dropAfter = -1;
+
+    private boolean rangeSupported = true;
+
+    /** the strong ETag of the archive (NullAllowed: not sent) */
+    private String etag = "\"v1\"";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        assertTrue(tempDir.mkdirs());
+        archive = Files.readAllBytes(new File(getBasedir(), "src/test/resources/zip/hoge.zip").toPath());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/dbflute.zip", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if (rangeSupported) {
+                    exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                }
+                if (etag != null) {
+                    exchange.getResponseHeaders().add("ETag", etag);
+                }
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().add("Content-Length", String.valueOf(archive.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                    return;
+                }
+                final String range = exchange.getRequestHeaders().getFirst("Range");
+                synchronized (rangeList) {
+                    rangeList.add(range);
+                }
+                final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                final boolean unchanged = ifRange == null || ifRange.equals(etag);
+                int from = 0;
+                int to = archive.length - 1;
+                if (range != null && rangeSupported && unchanged) {
+                    final String[] fromTo = range.substring("bytes=".length()).split("-");
+                    from = Integer.parseInt(fromTo[0]);
+                    if (fromTo.length > 1) {
+                        to = Integer.parseInt(fromTo[1]);
+                    }
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + from + "-" + to + "/" + archive.length);
+                    exchange.sendResponseHeaders(206, to - from + 1);
+                } else {
+                    exchange.sendResponseHeaders(200, archive.length);
+                }
+                try (OutputStream out = exchange.getResponseBody()) {
+                    if (dropAfter >= 0 && rangeList.size() == 1) {
+                        out.write(archive, from, dropAfter);
+                        out.flush();
+                        exchange.close();
+                        return;
+                    }
+                    out.write(archive, from, to - from + 1);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop(0);
+        FileUtils.deleteQuietly(tempDir);
+        super.tearDown();
+    }
+
+    public void test_download_basic() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+
+        // ## Act ##
+        long bytes = new ArchiveDownloader().download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(archive.length, bytes);
+        assertFalse(new File(destFile.getPath() + ArchiveDownloader.PART_EXT).exists());
+        assertEquals(Arrays.asList((String) null), rangeList);
+    }
+
+    public void test_download_resume_partFile() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        File partFile = new File(destFile.getPath() + ArchiveDownloader.PART_EXT);
+        Files.write(partFile.toPath(), Arrays.copyOf(archive, 50));
+        writeValidator(partFile, etag);
+
+        // ## Act ##
+        long bytes = new ArchiveDownloader().download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(archive.length - 50, bytes); // not including the resumed part
+        assertEquals(Arrays.asList("bytes=50-"), rangeList);
+        assertFalse(new File(partFile.getPath() + ArchiveDownloader.VALIDATOR_EXT).exists());
+    }
+
+    public void test_download_resume_changed() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        File partFile = new File(destFile.getPath() + ArchiveDownloader.PART_EXT);
+        Files.write(partFile.toPath(), new byte[50]); // a part of the old archive
+        writeValidator(partFile, "\"v0\"");
+
+        // ## Act ##
+        new ArchiveDownloader().download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(Arrays.asList("bytes=50-"), rangeList); // answered by the whole archive
+    }
+
+    public void test_download_resume_noValidator() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        File partFile = new File(destFile.getPath() + ArchiveDownloader.PART_EXT);
+        Files.write(partFile.toPath(), new byte[50]);
+
+        // ## Act ##
+        new ArchiveDownloader().download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(Arrays.asList((String) null), rangeList);
+    }
+
+    public void test_download_resume_dropped() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        dropAfter = 30;
+
+        // ## Act ##
+        new ArchiveDownloader().download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(2, rangeList.size());
+        assertEquals("bytes=30-", rangeList.get(1));
+    }
+
+    public void test_download_rangeNotSupported() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        File partFile = new File(destFile.getPath() + ArchiveDownloader.PART_EXT);
+        Files.write(partFile.toPath(), Arrays.copyOf(archive, 50));
+        rangeSupported = false;
+
+        // ## Act ##
+        new ArchiveDownloader().download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+    }
+
+    public void test_download_chunked() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        ArchiveDownloader downloader = new ArchiveDownloader().specifyConnections(3);
+        downloader.minChunkSize = 16;
+
+        // ## Act ##
+        long bytes = downloader.download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(archive.length, bytes);
+        assertEquals(3, rangeList.size());
+        assertTrue(rangeList.contains("bytes=0-" + ((archive.length + 2) / 3 - 1)));
+    }
+
+    public void test_download_chunked_killed() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        File partFile = new File(destFile.getPath() + ArchiveDownloader.PART_EXT);
+        Files.write(partFile.toPath(), new byte[archive.length]); // preallocated with holes
+        writeValidator(partFile, etag);
+        File chunkedFile = new File(partFile.getPath() + ArchiveDownloader.CHUNKED_EXT);
+        Files.write(chunkedFile.toPath(), new byte[0]);
+
+        // ## Act ##
+        new ArchiveDownloader().download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(Arrays.asList((String) null), rangeList); // not resumed by the size
+        assertFalse(chunkedFile.exists());
+    }
+
+    public void test_download_brokenContent() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        int nameLength = (archive[26] & 0xff) | ((archive[27] & 0xff) << 8);
+        int extraLength = (archive[28] & 0xff) | ((archive[29] & 0xff) << 8);
+        archive[30 + nameLength + extraLength] ^= 0x7f; // the stored content of the first entry
+
+        // ## Act ##
+        // ## Assert ##
+        try {
+            new ArchiveDownloader().download(buildUrl(), destFile);
+            fail();
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("broken"));
+        }
+        assertFalse(destFile.exists());
+        assertFalse(new File(destFile.getPath() + ArchiveDownloader.PART_EXT).exists());
+    }
+
+    public void test_download_chunked_rangeNotSupported() throws Exception {
+        // ## Arrange ##
+        File destFile = new File(tempDir, "dbflute.zip");
+        ArchiveDownloader downloader = new ArchiveDownloader().specifyConnections(3);
+        downloader.minChunkSize = 16;
+        rangeSupported = false;
+
+        // ## Act ##
+        downloader.download(buildUrl(), destFile);
+
+        // ## Assert ##
+        assertTrue(Arrays.equals(archive, Files.readAllBytes(destFile.toPath())));
+        assertEquals(Arrays.asList((String) null), rangeList);
+    }
+
+    private void writeValidator(File partFile, String validator) throws IOException {
+        Files.write(new File(partFile.getPath() + ArchiveDownloader.VALIDATOR_EXT).toPath(),
+                validator.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String buildUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/dbflute.zip";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class CachedPublicPropertiesTest extends AbstractMojoTestCase {
+
+    private static final String ETAG = "\"v1\"";
+
+    private HttpServer server;
+
+    private File cacheDir;
+
+    /** the If-None-Match header of each request (NullAllowed: element) */
+    private final List<String> conditionList = new ArrayList<String>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheDir = File.createTempFile("mdp-", "");
+        assertTrue(cacheDir.delete());
+        assertTrue(cacheDir.mkdirs());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/public.properties", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                final String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+                conditionList.add(condition);
+                if (ETAG.equals(condition)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                final byte[] content = "dbflute.latest.release.version = 1.1.0\n".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, content.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(content);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        server.stop(0);
+        FileUtils.deleteQuietly(cacheDir);
+        super.tearDown();
+    }
+
+    public void test_load_withinTtl() throws Exception {
+        // ## Arrange ##
+        load(60);
+
+        // ## Act ##
+        CachedPublicProperties prop = load(60);
+
+        // ## Assert ##
+        assertEquals("1.1.0", prop.getDBFluteLatestReleaseVersion());
+        assertEquals(1, conditionList.size());
+    }
+
+    public void test_load_revalidate() throws Exception {
+        // ## Arrange ##
+        load(0);
+
+        // ## Act ##
+        CachedPublicProperties prop = load(0);
+
+        // ## Assert ##
+        assertEquals("1.1.0", prop.getDBFluteLatestReleaseVersion());
+        assertEquals(2, conditionList.size());
+        assertEquals(ETAG, conditionList.get(1));
+    }
+
+    public void test_load_offline() throws Exception {
+        // ## Arrange ##
+        load(0);
+        server.stop(0);
+
+        // ## Act ##
+        CachedPublicProperties prop = load(0);
+
+        // ## Assert ##
+        assertEquals("1.1.0", prop.getDBFluteLatestReleaseVersion());
+    }
+
+    private CachedPublicProperties load(long ttlMinutes) {
+        CachedPublicProperties prop = new CachedPublicProperties(cacheDir, ttlMinutes);
+        prop.specifyUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/public.properties");
+        prop.load();
+        return prop;
+    }
+}
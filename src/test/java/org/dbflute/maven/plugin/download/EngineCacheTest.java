@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.dbflute.maven.plugin.util.ResourceUtil;
+
+public class EngineCacheTest extends AbstractMojoTestCase {
+
+    private File tempDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        assertTrue(tempDir.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteQuietly(tempDir);
+        super.tearDown();
+    }
+
+    public void test_publish_and_install() throws Exception {
+        // ## Arrange ##
+        File cacheDir = new File(tempDir, "cache");
+        File mydbfluteDir = new File(tempDir, "mydbflute");
+        EngineCache cache = new EngineCache(cacheDir);
+        File archiveFile = cache.getArchiveFile("dbflute-1.1.0");
+        Files.copy(new File(getBasedir(), "src/test/resources/zip/hoge.zip").toPath(), archiveFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        // ## Act ##
+        assertNull(cache.findEngine("dbflute-1.1.0"));
+        File engineDir = cache.publish("dbflute-1.1.0", archiveFile, 1);
+        File destDir = new File(mydbfluteDir, "dbflute-1.1.0");
+        cache.install(engineDir, destDir);
+
+        // ## Assert ##
+        assertEquals(engineDir, cache.findEngine("dbflute-1.1.0"));
+        assertEquals("test\n", ResourceUtil.readText(new File(destDir, "hoge/foo.txt"), "UTF-8"));
+        assertEquals(1, mydbfluteDir.list().length); // no temp directory left
+        assertEquals(new File(cacheDir, "engines/.dbflute-1.1.0.zip"), archiveFile); // the same name to resume
+    }
+
+    public void test_publish_twice() throws Exception {
+        // ## Arrange ##
+        EngineCache cache = new EngineCache(new File(tempDir, "cache"));
+        File archiveFile = new File(getBasedir(), "src/test/resources/zip/hoge.zip");
+
+        // ## Act ##
+        File first = cache.publish("dbflute-1.1.0", archiveFile, 1);
+        File second = cache.publish("dbflute-1.1.0", archiveFile, 1);
+
+        // ## Assert ##
+        assertEquals(first, second);
+        assertTrue(first.getName().startsWith("dbflute-1.1.0-"));
+    }
+
+    public void test_install_copyNotJar() throws Exception {
+        // ## Arrange ##
+        File cacheDir = new File(tempDir, "cache");
+        EngineCache cache = new EngineCache(cacheDir);
+        File archiveFile = cache.getArchiveFile("dbflute-1.1.0");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archiveFile))) {
+            out.putNextEntry(new ZipEntry("lib/dbflute.jar"));
+            out.write("jar".getBytes("UTF-8"));
+            out.putNextEntry(new ZipEntry("etc/cmd/_df-generate.sh"));
+            out.write("generate".getBytes("UTF-8"));
+        }
+        File engineDir = cache.publish("dbflute-1.1.0", archiveFile, 1);
+        File destDir = new File(tempDir, "mydbflute/dbflute-1.1.0");
+
+        // ## Act ##
+        cache.install(engineDir, destDir);
+        File scriptFile = new File(destDir, "etc/cmd/_df-generate.sh");
+        Files.write(scriptFile.toPath(), "edited".getBytes("UTF-8"));
+
+        // ## Assert ##
+        assertFalse(Files.isSameFile(scriptFile.toPath(), new File(engineDir, "etc/cmd/_df-generate.sh").toPath()));
+        assertEquals("generate", ResourceUtil.readText(new File(engineDir, "etc/cmd/_df-generate.sh"), "UTF-8"));
+        assertEquals("jar", ResourceUtil.readText(new File(destDir, "lib/dbflute.jar"), "UTF-8"));
+    }
+}
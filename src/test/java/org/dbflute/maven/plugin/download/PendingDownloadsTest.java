@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.download;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class PendingDownloadsTest extends AbstractMojoTestCase {
+
+    public void test_await_running() throws Exception {
+        // ## Arrange ##
+        final File mydbfluteDir = new File(getBasedir(), "target/pending-test/running");
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean();
+        final Callable<Void> download = new Callable<Void>() {
+            public Void call() throws Exception {
+                started.countDown();
+                Thread.sleep(200L);
+                done.set(true);
+                return null;
+            }
+        };
+
+        // ## Act ##
+        assertTrue(PendingDownloads.submit("1", mydbfluteDir, download));
+        started.await();
+        assertFalse(PendingDownloads.submit("1", new File(mydbfluteDir, "../running"), download)); // same directory
+        PendingDownloads.await("1", mydbfluteDir);
+
+        // ## Assert ##
+        assertTrue(done.get());
+        PendingDownloads.await("1", new File(getBasedir(), "target/pending-test/none")); // no download, no wait
+    }
+
+    public void test_await_failure() throws Exception {
+        // ## Arrange ##
+        final File mydbfluteDir = new File(getBasedir(), "target/pending-test/failure");
+        PendingDownloads.submit("1", mydbfluteDir, new Callable<Void>() {
+            public Void call() throws Exception {
+                throw new MojoFailureException("Not found the engine.");
+            }
+        });
+
+        // ## Act ##
+        // ## Assert ##
+        try {
+            PendingDownloads.await("1", mydbfluteDir);
+            fail();
+        } catch (MojoFailureException e) {
+            assertEquals("Not found the engine.", e.getMessage());
+        }
+    }
+
+    public void test_await_otherSession() throws Exception {
+        // ## Arrange ##
+        final File mydbfluteDir = new File(getBasedir(), "target/pending-test/otherSession");
+        PendingDownloads.submit("1", mydbfluteDir, new Callable<Void>() {
+            public Void call() throws Exception {
+                throw new MojoFailureException("Not found the engine.");
+            }
+        });
+
+        try {
+            PendingDownloads.await("1", mydbfluteDir);
+            fail();
+        } catch (MojoFailureException e) {
+            // finished
+        }
+
+        // ## Act ##
+        // ## Assert ##
+        PendingDownloads.await("2", mydbfluteDir); // e.g. the next build in the same JVM
+        PendingDownloads.await("1", mydbfluteDir); // forgotten
+    }
+
+    public void test_await_otherSession_running() throws Exception {
+        // ## Arrange ##
+        final File mydbfluteDir = new File(getBasedir(), "target/pending-test/otherSessionRunning");
+        final CountDownLatch released = new CountDownLatch(1);
+        final AtomicBoolean done = new AtomicBoolean();
+        PendingDownloads.submit("1", mydbfluteDir, new Callable<Void>() {
+            public Void call() throws Exception {
+                released.await();
+                done.set(true);
+                return null;
+            }
+        });
+
+        // ## Act ##
+        PendingDownloads.await("2", mydbfluteDir); // e.g. a concurrent build in the same JVM
+        released.countDown();
+        PendingDownloads.await("1", mydbfluteDir);
+
+        // ## Assert ##
+        assertTrue(done.get()); // still waited for by its own session
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.util;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class ContentReplacerTest extends AbstractMojoTestCase {
+
+    public void test_replace_sameAsReplaceAll() throws Exception {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("@database@", "h2");
+        params.put("@packageBase@", "com.example");
+        params.put("torque.project *= *[^\r\n]+", "torque.project = foo");
+        params.put("set DBFLUTE_HOME=..\\\\mydbflute\\\\[^\r\n]+",
+                "set DBFLUTE_HOME=..\\\\mydbflute\\\\dbflute-1.1.0");
+        params.put("(\\w+)@example\\.com", "$1@example.org");
+        String content = "database = @database@\n"
+                + "package = @packageBase@.@packageBase@\n"
+                + "torque.project = dfclient\r\n"
+                + "set DBFLUTE_HOME=..\\mydbflute\\dbflute-1.0.5K\r\n"
+                + "mail = dbflute@example.com\n";
+
+        String expected = content;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            expected = expected.replaceAll(entry.getKey(), entry.getValue());
+        }
+        assertEquals(expected, new ContentReplacer(params).replace(content));
+        assertTrue(expected.contains("dbflute-1.1.0\r\n"));
+        assertTrue(expected.contains("mail = dbflute@example.org"));
+    }
+
+    public void test_replace_literalScan() throws Exception {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("@database@", "h2");
+        params.put("@packageBase@", "com.example");
+        params.put("torque.project *= *[^\r\n]+", "torque.project = foo");
+        params.put("TABLE_1(\\d*) ", "TABLE_ONE$1 ");
+        String content = "database = @database@ @database\n"
+                + "package = @packageBase@.@packageBase@\n"
+                + "torque.project = dfclient\r\n"
+                + "TABLE_1 TABLE_123 TABLE_2\n";
+
+        String expected = content;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            expected = expected.replaceAll(entry.getKey(), entry.getValue());
+        }
+        ContentReplacer replacer = new ContentReplacer(params, 16);
+        assertEquals(expected, replacer.replace(content));
+        assertTrue(expected.contains("TABLE_ONE23 TABLE_2"));
+        StringWriter out = new StringWriter();
+        replacer.replace(new StringReader(content), out);
+        assertEquals(expected, out.toString());
+    }
+
+    public void test_replace_literalScan_keyOrder() throws Exception {
+        // the first key wins at the same position, as the alternation does
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("@data", "X");
+        params.put("@database@", "h2");
+        assertEquals("Xbase@ X", new ContentReplacer(params).replace("@database@ @data"));
+
+        params.remove("@data");
+        params.put("@data", "X");
+        assertEquals("h2 X", new ContentReplacer(params).replace("@database@ @data"));
+    }
+
+    public void test_extractLiteralPrefix() throws Exception {
+        assertEquals("@database@", ContentReplacer.extractLiteralPrefix("@database@"));
+        assertEquals("torque", ContentReplacer.extractLiteralPrefix("torque.project *= *[^\r\n]+"));
+        assertEquals("TABLE_1", ContentReplacer.extractLiteralPrefix("TABLE_1\\d* "));
+        assertEquals("a", ContentReplacer.extractLiteralPrefix("ab*c"));
+        assertEquals("", ContentReplacer.extractLiteralPrefix("a?b"));
+        assertEquals("", ContentReplacer.extractLiteralPrefix("foo|bar"));
+        assertEquals("", ContentReplacer.extractLiteralPrefix("(?m)^key"));
+    }
+
+    public void test_replace_noParams() throws Exception {
+        assertEquals("@database@", new ContentReplacer(
+                new LinkedHashMap<String, String>()).replace("@database@"));
+    }
+
+    public void test_replace_stream() throws Exception {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("@token@", "value");
+        params.put("(?m)^key *= *[^\r\n]+", "key = replaced");
+        params.put("(?<=x)y", "Y");
+        ContentReplacer replacer = new ContentReplacer(params, 32);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            sb.append(i).append(" @token@ xy notkey = ").append(i).append('\n');
+            sb.append("key = ").append(i).append("\r\n");
+        }
+        String content = sb.toString();
+
+        StringWriter out = new StringWriter();
+        replacer.replace(new StringReader(content), out);
+
+        assertEquals(replacer.replace(content), out.toString());
+        assertFalse(out.toString().contains("@token@"));
+        assertFalse(out.toString().contains("xy"));
+    }
+}
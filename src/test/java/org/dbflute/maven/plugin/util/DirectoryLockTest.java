@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.util;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class DirectoryLockTest extends AbstractMojoTestCase {
+
+    public void test_lock_exclusive() throws Exception {
+        final File dir = new File(getBasedir(), "target/lock-test/exclusive");
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        DirectoryLock lock = DirectoryLock.lock(dir);
+                        try {
+                            int current = running.incrementAndGet();
+                            maxRunning.set(Math.max(maxRunning.get(), current));
+                            Thread.sleep(50);
+                            running.decrementAndGet();
+                        } finally {
+                            lock.close();
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, maxRunning.get());
+    }
+
+    public void test_lock_reentrant() throws Exception {
+        File dir = new File(getBasedir(), "target/lock-test/reentrant");
+        DirectoryLock outer = DirectoryLock.lock(dir);
+        try {
+            try (DirectoryLock inner = DirectoryLock.lock(new File(dir,
+                    "../reentrant"))) {
+                assertNotNull(inner);
+            }
+        } finally {
+            outer.close();
+        }
+        // released completely
+        try (DirectoryLock lock = DirectoryLock.lock(dir)) {
+            assertNotNull(lock);
+        }
+    }
+
+    public void test_lock_noLockDir() throws Exception {
+        File dir = new File(getBasedir(), "target/lock-test/noLockDir");
+        File notDir = new File(getBasedir(), "target/lock-test/home-file");
+        notDir.getParentFile().mkdirs();
+        notDir.createNewFile();
+        String home = System.getProperty("user.home");
+        System.setProperty("user.home", notDir.getAbsolutePath());
+        try {
+            // locked only in this JVM instead of failing
+            try (DirectoryLock lock = DirectoryLock.lock(dir)) {
+                assertNotNull(lock);
+            }
+        } finally {
+            System.setProperty("user.home", home);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2014-2014 The DBFlute Project and the Others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language
+ * governing permissions and limitations under the License.
+ */
+package org.dbflute.maven.plugin.util;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+
+public class MetricsReportTest extends AbstractMojoTestCase {
+
+    public void test_toJson() throws Exception {
+        MetricsReport report = new MetricsReport("command");
+        report.label("client", "dbflute_\"x\"").value("exit_code", 0).seconds("run_seconds", 1500);
+        assertEquals("{\n  \"name\": \"command\",\n  \"client\": \"dbflute_\\\"x\\\"\",\n"
+                + "  \"exit_code\": 0,\n  \"run_seconds\": 1.5\n}\n", report.toJson());
+    }
+
+    public void test_toPrometheus() throws Exception {
+        MetricsReport report = new MetricsReport("command");
+        report.label("client", "dbflute_x").label("task", "jdbc").value("exit_code", 1);
+        assertEquals("# TYPE dbflute_command_exit_code gauge\n"
+                + "dbflute_command_exit_code{client=\"dbflute_x\",task=\"jdbc\"} 1\n", report.toPrometheus());
+    }
+
+    public void test_writePrometheus_replace() throws Exception {
+        File dir = new File(getBasedir(), "target/metrics-test");
+        FileUtils.deleteQuietly(dir);
+        MetricsReport report = new MetricsReport("download").value("download_bytes", 1);
+        report.writePrometheus(dir, "dbflute-download");
+        report.value("download_bytes", 2);
+        File file = report.writePrometheus(dir, "dbflute-download");
+        assertTrue(FileUtils.readFileToString(file, "UTF-8").contains("dbflute_download_download_bytes 2"));
+        assertEquals(1, dir.list().length);
+    }
+}
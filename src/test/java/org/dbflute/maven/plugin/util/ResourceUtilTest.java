@@ -16,8 +16,12 @@
 package org.dbflute.maven.plugin.util;
 
 import java.io.File;
-import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
 
 public class ResourceUtilTest extends AbstractMojoTestCase {
@@ -38,15 +42,102 @@ public class ResourceUtilTest extends AbstractMojoTestCase {
     }
 
     public void test_unzip() throws Exception {
-        InputStream is = Thread.currentThread().getContextClassLoader()
-                .getResourceAsStream("zip/hoge.zip");
+        File zipFile = new File(Thread.currentThread().getContextClassLoader()
+                .getResource("zip/hoge.zip").toURI());
         File tempDir = File.createTempFile("mdp-", "");
         assertTrue(tempDir.delete());
-        ResourceUtil.unzip(is, tempDir);
+        ResourceUtil.unzip(zipFile, tempDir, 1);
         assertTrue(tempDir.isDirectory());
         File hogeDir = new File(tempDir, "hoge");
         assertTrue(hogeDir.isDirectory());
         File fooFile = new File(hogeDir, "foo.txt");
         assertTrue(fooFile.isFile());
     }
+
+    public void test_unzip_content() throws Exception {
+        File zipFile = new File(Thread.currentThread().getContextClassLoader()
+                .getResource("zip/hoge.zip").toURI());
+        File tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        ResourceUtil.unzip(zipFile, tempDir, 1);
+        File fooFile = new File(new File(tempDir, "hoge"), "foo.txt");
+        assertEquals("test\n", ResourceUtil.readText(fooFile, "UTF-8"));
+    }
+
+    public void test_unzip_parallel() throws Exception {
+        File zipFile = new File(Thread.currentThread().getContextClassLoader()
+                .getResource("zip/hoge.zip").toURI());
+        File tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        ResourceUtil.unzip(zipFile, tempDir, 4);
+        File fooFile = new File(new File(tempDir, "hoge"), "foo.txt");
+        assertEquals("test\n", ResourceUtil.readText(fooFile, "UTF-8"));
+    }
+
+    public void test_unzip_brokenContent() throws Exception {
+        File zipFile = new File(Thread.currentThread().getContextClassLoader()
+                .getResource("zip/hoge.zip").toURI());
+        byte[] bytes = Files.readAllBytes(zipFile.toPath());
+        int nameLength = (bytes[26] & 0xff) | ((bytes[27] & 0xff) << 8);
+        int extraLength = (bytes[28] & 0xff) | ((bytes[29] & 0xff) << 8);
+        bytes[30 + nameLength + extraLength] ^= 0x7f; // the stored content
+        File tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        assertTrue(tempDir.mkdirs());
+        File brokenFile = new File(tempDir, "broken.zip");
+        Files.write(brokenFile.toPath(), bytes);
+        try {
+            ResourceUtil.unzip(brokenFile, new File(tempDir, "dest"), 1);
+            fail();
+        } catch (MojoExecutionException e) {
+            String message = ExceptionUtils.getRootCauseMessage(e);
+            assertTrue(message, message.contains("Invalid CRC"));
+        }
+    }
+
+    public void test_replaceContent() throws Exception {
+        File tempDir = File.createTempFile("mdp-", "");
+        assertTrue(tempDir.delete());
+        assertTrue(tempDir.mkdirs());
+        File file = new File(tempDir, "build.properties");
+        Files.write(file.toPath(),
+                "torque.project = dfclient\r\n".getBytes("UTF-8"));
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("torque.project *= *[^\r\n]+", "torque.project = maindb");
+
+        ResourceUtil.replaceContent(file, params);
+
+        assertEquals("torque.project = maindb\r\n",
+                ResourceUtil.readText(file, "UTF-8"));
+        assertEquals(1, tempDir.list().length); // no temp file left
+    }
+
+    public void test_replaceContent_permissions() throws Exception {
+        File file = File.createTempFile("mdp-", ".sh");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "export ANT_OPTS=-Xmx512m\n".getBytes("UTF-8"));
+        if (!file.setExecutable(true)) {
+            return; // not supported by the file system
+        }
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("512m", "1g");
+
+        ResourceUtil.replaceContent(file, params);
+
+        assertEquals("export ANT_OPTS=-Xmx1g\n", ResourceUtil.readText(file, "UTF-8"));
+        assertTrue(file.canExecute());
+    }
+
+    public void test_readText_large() throws Exception {
+        File file = File.createTempFile("mdp-", ".txt");
+        file.deleteOnExit();
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 2 * 1024 * 1024) {
+            sb.append("\u30c7\u30fc\u30bf dbflute\n");
+        }
+        Files.write(file.toPath(), sb.toString().getBytes("UTF-8"));
+
+        assertEquals(sb.toString(), ResourceUtil.readText(file, "UTF-8"));
+        assertTrue(file.delete()); // not locked by a mapping on Windows
+    }
 }